@@ -35,4 +35,10 @@ CREATE TABLE emp (
 );
 
 DROP SEQUENCE IF EXISTS MY_SEQ;
-CREATE SEQUENCE MY_SEQ START WITH 1;
\ No newline at end of file
+CREATE SEQUENCE MY_SEQ START WITH 1;
+DROP TABLE IF EXISTS bonus;
+CREATE TABLE bonus (
+    bonusno IDENTITY,
+    empno INTEGER,
+    comm DECIMAL(7,2)
+);
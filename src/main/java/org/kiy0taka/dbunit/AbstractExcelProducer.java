@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.apache.poi.hssf.usermodel.HSSFDateUtil;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.excel.XlsDataSetWriter;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * Excel dataset producer emitting rows to the consumer as cells are read.
+ * Each sheet is a table, the first row has the column names.
+ * Cell values are converted in the same way as {@link org.dbunit.dataset.excel.XlsTable}.
+ * @author kiy0taka
+ */
+public abstract class AbstractExcelProducer implements IDataSetProducer {
+
+    private IDataSetConsumer consumer = new DefaultConsumer();
+
+    private DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+
+    private String sheetName;
+
+    private List<Column> columns;
+
+    private boolean header;
+
+    private int rowIndex;
+
+    private Object[] row;
+
+    /**
+     * Create producer.
+     */
+    protected AbstractExcelProducer() {
+        symbols.setDecimalSeparator('.');
+    }
+
+    /**
+     * @see org.dbunit.dataset.stream.IDataSetProducer#setConsumer(org.dbunit.dataset.stream.IDataSetConsumer)
+     */
+    public void setConsumer(IDataSetConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Start sheet.
+     * @param name sheet name
+     */
+    protected void startSheet(String name) {
+        sheetName = name;
+        columns = new ArrayList<Column>();
+        header = true;
+        rowIndex = 0;
+        row = null;
+    }
+
+    /**
+     * Cell value read. Cells of a sheet are read in row order.
+     * @param rowNum zero based row number
+     * @param columnNum zero based column number
+     * @param value cell value
+     * @throws DataSetException consumer error
+     */
+    protected void cell(int rowNum, int columnNum, Object value) throws DataSetException {
+        if (rowNum == 0) {
+            if (header && columnNum == columns.size() && value != null && value.toString().trim().length() > 0) {
+                columns.add(new Column(value.toString().trim(), DataType.UNKNOWN));
+            } else {
+                // column names end at the first empty cell
+                header = false;
+            }
+            return;
+        }
+        startTable();
+        while (rowIndex < rowNum) {
+            flushRow();
+            rowIndex++;
+            row = new Object[columns.size()];
+        }
+        if (columnNum < row.length) {
+            row[columnNum] = value;
+        }
+    }
+
+    /**
+     * End sheet.
+     * @throws DataSetException consumer error
+     */
+    protected void endSheet() throws DataSetException {
+        if (sheetName == null) {
+            return;
+        }
+        startTable();
+        flushRow();
+        consumer.endTable();
+        sheetName = null;
+    }
+
+    /**
+     * Start dataset.
+     * @throws DataSetException consumer error
+     */
+    protected void startDataSet() throws DataSetException {
+        consumer.startDataSet();
+    }
+
+    /**
+     * End dataset.
+     * @throws DataSetException consumer error
+     */
+    protected void endDataSet() throws DataSetException {
+        consumer.endDataSet();
+    }
+
+    /**
+     * Convert numeric cell value.
+     * @param value cell value
+     * @param formatIndex format index
+     * @param formatString format string
+     * @param date1904 whether the workbook uses 1904 date system
+     * @return {@link Long} milliseconds for date, otherwise {@link BigDecimal}
+     */
+    protected Object numericValue(double value, int formatIndex, String formatString, boolean date1904) {
+        if (HSSFDateUtil.isValidExcelDate(value) && HSSFDateUtil.isADateFormat(formatIndex, formatString)) {
+            Date date = HSSFDateUtil.getJavaDate(value, date1904);
+            // XlsTable adds the timezone offset subtracted by POI
+            return date.getTime() + TimeZone.getDefault().getOffset(date.getTime());
+        }
+        if (XlsDataSetWriter.DATE_FORMAT_AS_NUMBER_DBUNIT.equals(formatString)) {
+            return new BigDecimal(String.valueOf(value)).longValue();
+        }
+        if (formatString != null && !formatString.equals("General") && !formatString.equals("@")) {
+            try {
+                return new BigDecimal(new DecimalFormat(formatString, symbols).format(value));
+            } catch (RuntimeException e) {
+                // not a number format, same as XlsTable
+                return toBigDecimal(value);
+            }
+        }
+        return toBigDecimal(value);
+    }
+
+    private static BigDecimal toBigDecimal(double value) {
+        String result = String.valueOf(value);
+        if (result.endsWith(".0")) {
+            result = result.substring(0, result.length() - 2);
+        }
+        return new BigDecimal(result);
+    }
+
+    private void startTable() throws DataSetException {
+        if (row == null) {
+            header = false;
+            consumer.startTable(new DefaultTableMetaData(sheetName, columns.toArray(new Column[columns.size()])));
+            row = new Object[columns.size()];
+        }
+    }
+
+    private void flushRow() throws DataSetException {
+        if (rowIndex > 0) {
+            consumer.row(row);
+        }
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return getClass().getSimpleName() + "[sheet=" + sheetName + ", columns=" + Arrays.toString(
+            columns == null ? null : columns.toArray()) + "]";
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Column value generator of {@link GeneratedDataSet}.
+ * Values are computed from the row index, so any row can be read in any order without keeping rows.
+ * Random values are determined by the seed and the row index.
+ * @author kiy0taka
+ */
+public abstract class ColumnGenerator {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * Value of the row.
+     * @param row zero based row index
+     * @return value
+     */
+    public abstract Object value(int row);
+
+    /**
+     * Create generator of the specification.
+     * <ul>
+     * <li><code>sequence(start[,step])</code> Long from start</li>
+     * <li><code>range(min,max)</code> random Long, or BigDecimal if min or max has a scale</li>
+     * <li><code>date(min,max)</code> random java.sql.Date of the days, by yyyy-mm-dd</li>
+     * <li><code>pick(value,...)</code> random String of the values</li>
+     * <li><code>cycle(value,...)</code> String of the values in turn</li>
+     * <li><code>format(pattern[,start])</code> String formatted with a sequence by {@link String#format}</li>
+     * <li><code>value(value)</code> String constant</li>
+     * <li><code>null</code> null</li>
+     * </ul>
+     * @param spec generator specification
+     * @param seed random seed
+     * @return generator
+     * @throws IllegalArgumentException invalid specification
+     */
+    public static ColumnGenerator parse(String spec, final long seed) {
+        if ("null".equals(spec)) {
+            return new Constant(null);
+        }
+        int open = spec.indexOf('(');
+        if (open < 0 || !spec.endsWith(")")) {
+            throw new IllegalArgumentException("Invalid generator: " + spec);
+        }
+        String name = spec.substring(0, open).trim();
+        String[] args = arguments(spec.substring(open + 1, spec.length() - 1));
+        if ("sequence".equals(name) && (args.length == 1 || args.length == 2)) {
+            final long start = Long.parseLong(args[0]);
+            final long step = args.length == 2 ? Long.parseLong(args[1]) : 1;
+            return new ColumnGenerator() {
+                public Object value(int row) {
+                    return start + step * row;
+                }
+            };
+        } else if ("range".equals(name) && args.length == 2) {
+            return new Range(new BigDecimal(args[0]), new BigDecimal(args[1]), seed);
+        } else if ("date".equals(name) && args.length == 2) {
+            return new DateRange(java.sql.Date.valueOf(args[0]), java.sql.Date.valueOf(args[1]), seed);
+        } else if ("pick".equals(name) && args.length > 0) {
+            final String[] values = args;
+            return new ColumnGenerator() {
+                public Object value(int row) {
+                    return values[(int) bounded(random(seed, row), values.length)];
+                }
+            };
+        } else if ("cycle".equals(name) && args.length > 0) {
+            final String[] values = args;
+            return new ColumnGenerator() {
+                public Object value(int row) {
+                    return values[row % values.length];
+                }
+            };
+        } else if ("format".equals(name) && (args.length == 1 || args.length == 2)) {
+            final String pattern = args[0];
+            final long start = args.length == 2 ? Long.parseLong(args[1]) : 1;
+            String.format(Locale.ENGLISH, pattern, start);
+            return new ColumnGenerator() {
+                public Object value(int row) {
+                    return String.format(Locale.ENGLISH, pattern, start + row);
+                }
+            };
+        } else if ("value".equals(name) && args.length == 1) {
+            return new Constant(args[0]);
+        }
+        throw new IllegalArgumentException("Invalid generator: " + spec);
+    }
+
+    /**
+     * Random value of the row.
+     * @param seed random seed
+     * @param row row index
+     * @return random value
+     */
+    static long random(long seed, int row) {
+        long z = seed + (row + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long bounded(long random, long bound) {
+        return (random >>> 1) % bound;
+    }
+
+    private static String[] arguments(String args) {
+        List<String> result = new ArrayList<String>();
+        if (args.trim().length() > 0) {
+            for (String arg : args.split(",")) {
+                result.add(arg.trim());
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Constant value.
+     */
+    private static class Constant extends ColumnGenerator {
+
+        private Object value;
+
+        public Constant(Object value) {
+            this.value = value;
+        }
+
+        public Object value(int row) {
+            return value;
+        }
+    }
+
+    /**
+     * Random number between min and max, both inclusive.
+     */
+    private static class Range extends ColumnGenerator {
+
+        private long min;
+
+        private long bound;
+
+        private int scale;
+
+        private long seed;
+
+        public Range(BigDecimal min, BigDecimal max, long seed) {
+            scale = Math.max(Math.max(min.scale(), max.scale()), 0);
+            this.min = min.setScale(scale).unscaledValue().longValue();
+            bound = max.setScale(scale).unscaledValue().longValue() - this.min + 1;
+            if (bound <= 0) {
+                throw new IllegalArgumentException("Invalid range: " + min + " > " + max);
+            }
+            this.seed = seed;
+        }
+
+        public Object value(int row) {
+            long value = min + bounded(random(seed, row), bound);
+            return scale == 0 ? (Object) value : BigDecimal.valueOf(value, scale);
+        }
+    }
+
+    /**
+     * Random day between min and max, both inclusive.
+     */
+    private static class DateRange extends ColumnGenerator {
+
+        private java.sql.Date min;
+
+        private long bound;
+
+        private long seed;
+
+        public DateRange(java.sql.Date min, java.sql.Date max, long seed) {
+            this.min = min;
+            bound = epochDay(max) - epochDay(min) + 1;
+            if (bound <= 0) {
+                throw new IllegalArgumentException("Invalid range: " + min + " > " + max);
+            }
+            this.seed = seed;
+        }
+
+        public Object value(int row) {
+            Calendar calendar = new GregorianCalendar();
+            calendar.setTime(min);
+            calendar.add(Calendar.DAY_OF_MONTH, (int) bounded(random(seed, row), bound));
+            return new java.sql.Date(calendar.getTimeInMillis());
+        }
+
+        private static long epochDay(java.sql.Date date) {
+            Calendar local = new GregorianCalendar();
+            local.setTime(date);
+            Calendar utc = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+            utc.clear();
+            utc.set(local.get(Calendar.YEAR), local.get(Calendar.MONTH), local.get(Calendar.DAY_OF_MONTH));
+            return utc.getTimeInMillis() / MILLIS_PER_DAY;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.csv.CsvDataSetWriter;
+import org.dbunit.dataset.csv.CsvParserException;
+import org.dbunit.dataset.csv.CsvParserImpl;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * Producer of a table from a UTF-8 CSV stream, in the format of {@link CsvDataSetWriter}.
+ * The first line is column names, and <code>null</code> is null value.
+ * @author kiy0taka
+ */
+public class CsvTableProducer implements IDataSetProducer {
+
+    private InputStream in;
+
+    private String tableName;
+
+    private IDataSetConsumer consumer = new DefaultConsumer();
+
+    /**
+     * Create producer.
+     * The stream is not closed.
+     * @param in CSV stream
+     * @param tableName table name
+     */
+    public CsvTableProducer(InputStream in, String tableName) {
+        this.in = in;
+        this.tableName = tableName;
+    }
+
+    /**
+     * @see org.dbunit.dataset.stream.IDataSetProducer#setConsumer(org.dbunit.dataset.stream.IDataSetConsumer)
+     */
+    public void setConsumer(IDataSetConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * @see org.dbunit.dataset.stream.IDataSetProducer#produce()
+     */
+    @SuppressWarnings("unchecked")
+    public void produce() throws DataSetException {
+        List<List<Object>> rows;
+        try {
+            Reader reader = new InputStreamReader(in, "UTF-8");
+            rows = new CsvParserImpl().parse(reader, tableName);
+        } catch (CsvParserException e) {
+            throw new DataSetException("Invalid CSV of table " + tableName, e);
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        }
+        List<Object> names = rows.get(0);
+        Column[] columns = new Column[names.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(names.get(i).toString(), DataType.UNKNOWN);
+        }
+        consumer.startDataSet();
+        consumer.startTable(new DefaultTableMetaData(tableName, columns));
+        for (List<Object> row : rows.subList(1, rows.size())) {
+            Object[] values = row.toArray();
+            for (int i = 0; i < values.length; i++) {
+                if (CsvDataSetWriter.NULL.equals(values[i])) {
+                    values[i] = null;
+                }
+            }
+            consumer.row(values);
+        }
+        consumer.endTable();
+        consumer.endDataSet();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return getClass().getSimpleName() + "[" + tableName + "]";
+    }
+}
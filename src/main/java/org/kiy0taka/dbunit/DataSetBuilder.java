@@ -150,7 +150,7 @@ public class DataSetBuilder {
         return new DataSetBuilder(dataSet);
     }
 
-    private static class RTrimTable extends ReplacementTable {
+    static class RTrimTable extends ReplacementTable {
 
         private static final Pattern RTRIM = Pattern.compile(" +$");
         public RTrimTable(ITable table) {
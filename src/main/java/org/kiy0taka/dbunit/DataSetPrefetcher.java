@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.dbunit.dataset.IDataSet;
+
+/**
+ * Load datasets of upcoming test methods in background.
+ * Datasets are loaded in the order they will be used, at most <code>window</code> uses ahead,
+ * so loading overlaps with execution of the previous test.
+ * A dataset used again within the window is loaded once.
+ * @author kiy0taka
+ */
+public class DataSetPrefetcher {
+
+    private List<String> paths;
+
+    private int window;
+
+    private ExecutorService executor;
+
+    private Loader loader;
+
+    private Map<String, Future<IDataSet>> futures = new HashMap<String, Future<IDataSet>>();
+
+    private Map<String, Future<IDataSet>> served = new HashMap<String, Future<IDataSet>>();
+
+    private int position;
+
+    /**
+     * Create prefetcher and start loading the first datasets.
+     * @param paths dataset paths in order of use
+     * @param window number of uses loaded ahead
+     * @param executor executor loading datasets
+     * @param loader dataset loader
+     */
+    public DataSetPrefetcher(List<String> paths, int window, ExecutorService executor, Loader loader) {
+        this.paths = paths;
+        this.window = window;
+        this.executor = executor;
+        this.loader = loader;
+        prefetch();
+    }
+
+    /**
+     * Get dataset, waiting for the background loading.
+     * Only the next use in order moves the cursor. A dataset used again, such as the same init reloaded,
+     * is served from the uses of the current test or loaded by the caller thread.
+     * @param path dataset path
+     * @return dataset
+     */
+    public synchronized IDataSet get(String path) {
+        Future<IDataSet> future;
+        if (position < paths.size() && paths.get(position).equals(path)) {
+            position++;
+            future = futures.remove(path);
+            if (future != null && upcoming().contains(path)) {
+                // used again soon, keep the loaded dataset
+                futures.put(path, future);
+            }
+            prefetch();
+            if (future != null) {
+                served.put(path, future);
+            }
+        } else {
+            future = served.containsKey(path) ? served.get(path) : futures.get(path);
+        }
+        if (future == null) {
+            return loader.load(path);
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Move the cursor past the uses of a finished test, including the uses it skipped.
+     * @param end index of the first use of the next test
+     */
+    public synchronized void skipTo(int end) {
+        served.clear();
+        if (end > position) {
+            position = Math.min(end, paths.size());
+            prefetch();
+        }
+    }
+
+    /**
+     * Number of datasets loading or loaded ahead.
+     * @return number of datasets
+     */
+    public synchronized int size() {
+        return futures.size();
+    }
+
+    private Set<String> upcoming() {
+        return new LinkedHashSet<String>(paths.subList(position, Math.min(position + window, paths.size())));
+    }
+
+    private void prefetch() {
+        Set<String> upcoming = upcoming();
+        for (Iterator<Map.Entry<String, Future<IDataSet>>> it = futures.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Future<IDataSet>> entry = it.next();
+            if (!upcoming.contains(entry.getKey())) {
+                entry.getValue().cancel(false);
+                it.remove();
+            }
+        }
+        for (final String path : upcoming) {
+            if (!futures.containsKey(path)) {
+                futures.put(path, executor.submit(new Callable<IDataSet>() {
+                    public IDataSet call() {
+                        return loader.load(path);
+                    }
+                }));
+            }
+        }
+    }
+
+    /**
+     * Dataset loader.
+     * @author kiy0taka
+     */
+    public interface Loader {
+
+        /**
+         * Load dataset.
+         * @param path dataset path
+         * @return dataset
+         */
+        IDataSet load(String path);
+    }
+}
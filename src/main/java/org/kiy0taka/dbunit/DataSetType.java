@@ -0,0 +1,335 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.CompositeDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.FilteredDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.excel.XlsDataSet;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.dbunit.dataset.xml.FlatXmlDataSet;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.xml.sax.InputSource;
+
+/**
+ * Dataset file type, named by file suffix.
+ * Files with <code>.gz</code> suffix are decompressed while parsing, and typed by the suffix before it.
+ * (i.e. "emp.xml.gz" is {@link #xml})
+ * @author kiy0taka
+ */
+public enum DataSetType {
+
+    /**
+     * Flat XML dataset.
+     * @see FlatXmlDataSet
+     */
+    xml() {
+
+        /**
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.io.InputStream, java.lang.String)
+         */
+        public IDataSet createDataSet(InputStream in, String fileName) throws DataSetException, IOException {
+            return new FlatXmlDataSet(new FlatXmlProducer(new InputSource(in)));
+        }
+
+        /**
+         * Parse only the tables by {@link IndexedFlatXmlDataSet}.
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.net.URL, java.lang.String[])
+         */
+        public IDataSet createDataSet(URL url, String[] tableNames) throws DataSetException, IOException {
+            return new IndexedFlatXmlDataSet(url, tableNames);
+        }
+    },
+
+    /**
+     * Flat XML dataset read by {@link FlatXmlPullProducer}.
+     * Used for xml files if the runner property <code>xmlType</code> is <code>xmlpull</code>.
+     */
+    xmlpull() {
+
+        /**
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.net.URL)
+         */
+        public IDataSet createDataSet(URL url) throws DataSetException, IOException {
+            return new CachedDataSet(new FlatXmlPullProducer(url));
+        }
+
+        /**
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.io.InputStream, java.lang.String)
+         */
+        public IDataSet createDataSet(InputStream in, String fileName) throws DataSetException, IOException {
+            return new CachedDataSet(new FlatXmlPullProducer(in));
+        }
+
+        /**
+         * Parse only the tables by {@link IndexedFlatXmlDataSet}.
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.net.URL, java.lang.String[])
+         */
+        public IDataSet createDataSet(URL url, String[] tableNames) throws DataSetException, IOException {
+            return new IndexedFlatXmlDataSet(url, tableNames) {
+                protected IDataSetProducer createProducer(InputStream in) {
+                    return new FlatXmlPullProducer(in);
+                }
+            };
+        }
+    },
+
+    /**
+     * Excel 97-2003 dataset.
+     * @see XlsDataSet
+     */
+    xls() {
+
+        /**
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.io.InputStream, java.lang.String)
+         */
+        public IDataSet createDataSet(InputStream in, String fileName) throws DataSetException, IOException {
+            return new XlsDataSet(in);
+        }
+    },
+
+    /**
+     * Excel 97-2003 dataset, read by HSSF events without the workbook object model.
+     * Used for xls files if the runner property <code>xlsType</code> is <code>xlsevent</code>.
+     * @see XlsProducer
+     */
+    xlsevent() {
+
+        /**
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.io.InputStream, java.lang.String)
+         */
+        public IDataSet createDataSet(InputStream in, String fileName) throws DataSetException, IOException {
+            return new CachedDataSet(new XlsProducer(in));
+        }
+    },
+
+    /**
+     * Excel 2007 dataset.
+     * @see XlsxProducer
+     */
+    xlsx() {
+
+        /**
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.net.URL)
+         */
+        public IDataSet createDataSet(URL url) throws DataSetException, IOException {
+            return new CachedDataSet(new XlsxProducer(url));
+        }
+
+        /**
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.io.InputStream, java.lang.String)
+         */
+        public IDataSet createDataSet(InputStream in, String fileName) throws DataSetException, IOException {
+            return new CachedDataSet(new XlsxProducer(in));
+        }
+    },
+
+    /**
+     * CSV file of a table named by the file name.
+     * The first line is column names, and <code>null</code> is null value.
+     * @see CsvTableProducer
+     */
+    csv() {
+
+        /**
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.io.InputStream, java.lang.String)
+         */
+        public IDataSet createDataSet(InputStream in, String fileName) throws DataSetException, IOException {
+            return new CachedDataSet(new CsvTableProducer(in, baseName(fileName)));
+        }
+    },
+
+    /**
+     * Descriptor of generated rows.
+     * @see GeneratedDataSet
+     */
+    gen() {
+
+        /**
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.io.InputStream, java.lang.String)
+         */
+        public IDataSet createDataSet(InputStream in, String fileName) throws DataSetException, IOException {
+            return new GeneratedDataSet(new InputStreamReader(in, "UTF-8"));
+        }
+    },
+
+    /**
+     * Zip archive of dataset files, each entry parsed by the type of its name and decompressed if gzipped.
+     * Tables are in the order of the entries, or of the <code>table-ordering.txt</code> entry if exists.
+     */
+    zip() {
+
+        /**
+         * @see org.kiy0taka.dbunit.DataSetType#createDataSet(java.io.InputStream, java.lang.String)
+         */
+        public IDataSet createDataSet(InputStream in, String fileName) throws DataSetException, IOException {
+            ZipInputStream zip = new ZipInputStream(in);
+            InputStream entryStream = new FilterInputStream(zip) {
+                public void close() {
+                    // entries are closed by the next entry
+                }
+            };
+            List<IDataSet> dataSets = new ArrayList<IDataSet>();
+            List<String> tableOrdering = null;
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String entryName = entry.getName();
+                if (TABLE_ORDERING.equals(entryName.substring(entryName.lastIndexOf('/') + 1))) {
+                    tableOrdering = readLines(entryStream);
+                } else {
+                    dataSets.add(forPath(entryName).createDataSet(decompress(entryStream, entryName), entryName));
+                }
+            }
+            IDataSet result = new CompositeDataSet(dataSets.toArray(new IDataSet[dataSets.size()]));
+            return tableOrdering == null
+                ? result : new FilteredDataSet(tableOrdering.toArray(new String[tableOrdering.size()]), result);
+        }
+    };
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private static final String TABLE_ORDERING = "table-ordering.txt";
+
+    /**
+     * Create dataset.
+     * @param url dataset file
+     * @return dataset
+     * @throws DataSetException DbUnit error
+     * @throws IOException I/O error
+     */
+    public IDataSet createDataSet(URL url) throws DataSetException, IOException {
+        InputStream in = openStream(url);
+        try {
+            return createDataSet(in, url.getPath());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Create dataset from the stream, which is not closed.
+     * @param in dataset stream, decompressed
+     * @param fileName file name of the stream
+     * @return dataset
+     * @throws DataSetException DbUnit error
+     * @throws IOException I/O error
+     */
+    public abstract IDataSet createDataSet(InputStream in, String fileName) throws DataSetException, IOException;
+
+    /**
+     * Create dataset of the tables.
+     * @param url dataset file
+     * @param tableNames table names in dataset order
+     * @return dataset
+     * @throws DataSetException DbUnit error
+     * @throws IOException I/O error
+     */
+    public IDataSet createDataSet(URL url, String[] tableNames) throws DataSetException, IOException {
+        return new FilteredDataSet(tableNames, createDataSet(url));
+    }
+
+    /**
+     * Type of the dataset file.
+     * @param path dataset file path, table selection after <code>#</code> is ignored
+     * @return dataset type
+     * @throws IllegalArgumentException unknown suffix
+     */
+    public static DataSetType forPath(String path) {
+        String file = TestPlan.resourcePath(path);
+        if (isCompressed(file)) {
+            file = file.substring(0, file.length() - GZIP_SUFFIX.length());
+        }
+        return valueOf(file.substring(file.lastIndexOf('.') + 1).toLowerCase(Locale.getDefault()));
+    }
+
+    /**
+     * Open the dataset file, decompressing gzip files.
+     * @param url dataset file
+     * @return stream
+     * @throws IOException I/O error
+     */
+    public static InputStream openStream(URL url) throws IOException {
+        InputStream in = url.openStream();
+        try {
+            return decompress(in, url.getPath());
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decompress the stream of a gzip file.
+     * @param in stream of the file
+     * @param path file path
+     * @return decompressed stream, or the stream itself if the file is not compressed
+     * @throws IOException I/O error
+     */
+    static InputStream decompress(InputStream in, String path) throws IOException {
+        return isCompressed(path) ? new GZIPInputStream(in, 8192) : in;
+    }
+
+    /**
+     * Whether the file is compressed by gzip.
+     * @param path file path
+     * @return true if the path ends with <code>.gz</code>
+     */
+    public static boolean isCompressed(String path) {
+        return path.toLowerCase(Locale.ENGLISH).endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * File name without directories and suffixes. (i.e. "data/emp.csv.gz" is "emp")
+     * @param path file path
+     * @return base name
+     */
+    static String baseName(String path) {
+        String result = path.substring(path.lastIndexOf('/') + 1);
+        if (isCompressed(result)) {
+            result = result.substring(0, result.length() - GZIP_SUFFIX.length());
+        }
+        int index = result.lastIndexOf('.');
+        return index < 0 ? result : result.substring(0, index);
+    }
+
+    private static List<String> readLines(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        List<String> result = new ArrayList<String>();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.trim().length() > 0) {
+                result.add(line.trim());
+            }
+        }
+        return result;
+    }
+}
@@ -17,45 +17,60 @@ package org.kiy0taka.dbunit;
 
 import static org.kiy0taka.dbunit.DataSetBuilder.dataSet;
 
-import java.io.FileNotFoundException;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.net.URL;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.MissingResourceException;
+import java.util.Map;
 import java.util.Properties;
 import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.sql.DataSource;
 
 import org.apache.commons.dbcp.BasicDataSource;
-import org.dbunit.Assertion;
+import org.apache.commons.dbcp.ConnectionFactory;
 import org.dbunit.DatabaseUnitException;
 import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.DatabaseConfig.ConfigProperty;
+import org.dbunit.database.DatabaseConnection;
 import org.dbunit.database.DatabaseDataSourceConnection;
 import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
 import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.FilteredDataSet;
 import org.dbunit.dataset.IDataSet;
-import org.dbunit.dataset.excel.XlsDataSet;
-import org.dbunit.dataset.xml.FlatXmlDataSet;
-import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
-import org.junit.runners.model.FrameworkField;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.Statement;
-import org.xml.sax.InputSource;
+import org.kiy0taka.dbunit.DbUnitTest.AssertMode;
 
 /**
  * JUnit Runner implementation for DbUnit.
@@ -65,8 +80,13 @@ public class DbUnitRunner extends BlockJUnit4ClassRunner {
 
     private static final ResourceBundle BUNDLE;
 
+    private static final Properties CONFIG_PROPERTIES;
+
+    private static final long MAX_WAIT_MILLIS = 30000;
+
     static {
         BUNDLE = PropertyResourceBundle.getBundle("dbunit-runner");
+        CONFIG_PROPERTIES = configProperties(BUNDLE);
         loadDriver(BUNDLE.getString("driver"));
     }
 
@@ -78,18 +98,18 @@ public class DbUnitRunner extends BlockJUnit4ClassRunner {
         }
     }
 
-    private enum DataSetType {
-        xml() {
-            public IDataSet createDataSet(URL url) throws DataSetException, IOException {
-                return new FlatXmlDataSet(new FlatXmlProducer(new InputSource(url.openStream())));
-            }
-        },
-        xls() {
-            public IDataSet createDataSet(URL url) throws DataSetException, IOException {
-                return new XlsDataSet(url.openStream());
+    protected static Properties configProperties(ResourceBundle bundle) {
+        Set<String> names = new HashSet<String>();
+        for (ConfigProperty cp : DatabaseConfig.ALL_PROPERTIES) {
+            names.add(cp.getProperty());
+        }
+        Properties result = new Properties();
+        for (String key : bundle.keySet()) {
+            if (names.contains(key)) {
+                result.put(key, bundle.getString(key));
             }
-        };
-        public abstract IDataSet createDataSet(URL url) throws DataSetException, IOException;
+        }
+        return result;
     }
 
     protected DataSource dataSource;
@@ -106,6 +126,48 @@ public class DbUnitRunner extends BlockJUnit4ClassRunner {
 
     protected Properties configProperties = new Properties();
 
+    protected TestPlan testPlan;
+
+    protected SequenceResetter sequenceResetter = new SequenceResetter();
+
+    protected boolean shareConnection = Boolean.parseBoolean(optionalValue(BUNDLE, "shareConnection"));
+
+    protected int statementCacheSize = Integer.parseInt(optionalValue(BUNDLE, "statementCacheSize", "0"));
+
+    protected boolean assertChecksum = Boolean.parseBoolean(optionalValue(BUNDLE, "assertChecksum"));
+
+    protected TableChecksum tableChecksum = new TableChecksum();
+
+    protected int assertThreads = Integer.parseInt(optionalValue(BUNDLE, "assertThreads", "1"));
+
+    protected ExecutorService assertExecutor;
+
+    protected int prefetchThreads = Integer.parseInt(optionalValue(BUNDLE, "prefetchThreads", "0"));
+
+    protected int prefetchWindow = Integer.parseInt(optionalValue(BUNDLE, "prefetchWindow", "4"));
+
+    protected ExecutorService prefetchExecutor;
+
+    protected DataSetPrefetcher prefetcher;
+
+    protected Map<FrameworkMethod, Integer> prefetchEnds = new HashMap<FrameworkMethod, Integer>();
+
+    protected DataSetType xmlType = DataSetType.valueOf(optionalValue(BUNDLE, "xmlType", "xml"));
+
+    protected DataSetType xlsType = DataSetType.valueOf(optionalValue(BUNDLE, "xlsType", "xls"));
+
+    protected String fixtureCacheDir = optionalValue(BUNDLE, "fixtureCacheDir");
+
+    protected String jdbcReportFile = optionalValue(BUNDLE, "jdbcReportFile");
+
+    protected int maxConnections = Integer.parseInt(optionalValue(BUNDLE, "maxConnections", "20"));
+
+    protected JdbcStats jdbcStats;
+
+    private TimedStatement timedInvocation;
+
+    private LoadStatement.LoadWorker loadWorker;
+
     /**
      * Constract Runner for DbUnit.
      * @param testClass Test Class
@@ -113,113 +175,610 @@ public class DbUnitRunner extends BlockJUnit4ClassRunner {
      */
     public DbUnitRunner(Class<?> testClass) throws InitializationError {
         super(testClass);
-        for (ConfigProperty cp : DatabaseConfig.ALL_PROPERTIES) {
-            try {
-                configProperties.put(cp.getProperty(), BUNDLE.getString(cp.getProperty()));
-            } catch (MissingResourceException ignore) {
-                // NOP
-            }
-        }
+        configProperties.putAll(CONFIG_PROPERTIES);
+        testPlan = new TestPlan(getTestClass());
     }
 
     protected Statement methodBlock(final FrameworkMethod method) {
-        Statement stmt = super.methodBlock(method);
-        DbUnitTest ann = method.getAnnotation(DbUnitTest.class);
-        return ann == null ? stmt : new DbUnitStatement(ann, stmt);
+        JdbcLimit limit = method.getAnnotation(JdbcLimit.class);
+        // the injected connections of this method count to the stats
+        jdbcStats = limit != null || jdbcReportFile != null ? new JdbcStats() : null;
+        Statement stmt = dbUnitBlock(method);
+        return jdbcStats == null ? stmt : new JdbcStatsStatement(method, limit, jdbcStats, stmt);
+    }
+
+    protected Statement dbUnitBlock(FrameworkMethod method) {
+        DbUnitTest ann = testPlan.getAnnotation(method);
+        ScalingTest scaling = method.getAnnotation(ScalingTest.class);
+        if (ann != null && scaling != null) {
+            return new ScalingStatement(method, ann, scaling);
+        }
+        final Statement stmt = super.methodBlock(method);
+        if (ann != null) {
+            return new DbUnitStatement(ann, stmt);
+        }
+        return new Statement() {
+            public void evaluate() throws Throwable {
+                try {
+                    stmt.evaluate();
+                } finally {
+                    // DbUnitStatement closes the connection leased by createTest, plain test methods do not
+                    releaseConnection();
+                }
+            }
+        };
     }
 
     protected List<FrameworkMethod> computeTestMethods() {
         Set<FrameworkMethod> set = new HashSet<FrameworkMethod>(super.computeTestMethods());
         set.addAll(getTestClass().getAnnotatedMethods(DbUnitTest.class));
-        return new ArrayList<FrameworkMethod>(set);
+        List<FrameworkMethod> result = new ArrayList<FrameworkMethod>(set);
+        Collections.sort(result, methodOrder());
+        return result;
     }
 
-    protected Object createTest() throws Exception {
-        Object result = super.createTest();
-        dataSource = createDataSource();
-        List<FrameworkField> connFields = getTestClass().getAnnotatedFields(TestConnection.class);
-        if (!connFields.isEmpty()) {
-            testConnection = dataSource.getConnection();
-            for (FrameworkField ff : connFields) {
-                final Field f = ff.getField();
-                AccessController.doPrivileged(new SetAccessibleAction(f));
-                f.set(result, testConnection);
+    protected Comparator<FrameworkMethod> methodOrder() {
+        return new FixtureAffinityComparator();
+    }
+
+    protected void runChild(FrameworkMethod method, RunNotifier notifier) {
+        try {
+            super.runChild(method, notifier);
+        } finally {
+            // ignored and failed tests do not use all of their datasets
+            DataSetPrefetcher p = prefetcher;
+            Integer end = prefetchEnds.get(method);
+            if (p != null && end != null) {
+                p.skipTo(end);
             }
         }
-        List<FrameworkField> dsFields = getTestClass().getAnnotatedFields(TestDataSource.class);
-        if (!dsFields.isEmpty()) {
-            for (FrameworkField ff : dsFields) {
-                final Field f = ff.getField();
-                AccessController.doPrivileged(new SetAccessibleAction(f));
-                f.set(result, dataSource);
+    }
+
+    protected Statement classBlock(RunNotifier notifier) {
+        final Statement stmt = super.classBlock(notifier);
+        return new Statement() {
+            public void evaluate() throws Throwable {
+                try {
+                    testPlan.checkFixtures();
+                    startPrefetch();
+                    stmt.evaluate();
+                } finally {
+                    shutdownPrefetch();
+                    shutdownAssertExecutor();
+                    closeDataSource();
+                }
             }
+        };
+    }
+
+    protected Object createTest() throws Exception {
+        if (loadWorker != null) {
+            return loadWorker.createTest();
+        }
+        Object result = super.createTest();
+        if (dataSource == null) {
+            dataSource = createDataSource();
         }
+        List<Field> connFields = testPlan.getConnectionFields();
+        if (shareConnection) {
+            testConnection = dataSource.getConnection();
+            testConnection.setAutoCommit(false);
+        } else if (!connFields.isEmpty()) {
+            testConnection = dataSource.getConnection();
+        }
+        inject(result, testConnection);
         return result;
     }
 
+    /**
+     * Close the connection leased for the test instance, if not closed yet.
+     * @throws SQLException SQL error
+     */
+    protected void releaseConnection() throws SQLException {
+        Connection conn = testConnection;
+        testConnection = null;
+        if (conn != null) {
+            conn.close();
+        }
+    }
+
+    /**
+     * Inject the connection and the data source into the test instance.
+     * @param test test instance
+     * @param connection connection for {@link TestConnection} fields
+     * @throws IllegalAccessException field access error
+     */
+    protected void inject(Object test, Connection connection) throws IllegalAccessException {
+        JdbcStats stats = jdbcStats;
+        for (Field f : testPlan.getConnectionFields()) {
+            f.set(test, stats == null ? connection : JdbcProxy.connection(connection, stats));
+        }
+        for (Field f : testPlan.getDataSourceFields()) {
+            f.set(test, stats == null ? dataSource : JdbcProxy.dataSource(dataSource, stats));
+        }
+    }
+
+    protected Statement methodInvoker(FrameworkMethod method, Object test) {
+        if (timedInvocation != null) {
+            // ScalingStatement times the invocation inside befores, afters and rules
+            timedInvocation.statement = super.methodInvoker(method, test);
+            return timedInvocation;
+        } else if (loadWorker != null) {
+            return loadWorker.invoker(super.methodInvoker(method, test));
+        }
+        LoadTest load = method.getAnnotation(LoadTest.class);
+        return load == null || testPlan.getAnnotation(method) == null
+            ? super.methodInvoker(method, test) : new LoadStatement(method, load);
+    }
+
+    /**
+     * Clock timing the test methods of {@link ScalingTest}.
+     * @return current time in nanoseconds
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
     protected DataSource createDataSource() {
-        BasicDataSource result = new BasicDataSource();
+        BasicDataSource result = new BasicDataSource() {
+            protected ConnectionFactory createConnectionFactory() throws SQLException {
+                final ConnectionFactory factory = super.createConnectionFactory();
+                if (statementCacheSize <= 0) {
+                    return factory;
+                }
+                return new ConnectionFactory() {
+                    public Connection createConnection() throws SQLException {
+                        // cached statements live as long as the physical connection in the pool
+                        return StatementCache.connection(factory.createConnection(), statementCacheSize);
+                    }
+                };
+            }
+        };
         result.setUsername(username);
         result.setPassword(password);
         result.setUrl(jdbcUrl);
+        result.setMaxActive(maxConnections);
+        // fail instead of hanging when test code leaves connections open
+        result.setMaxWait(MAX_WAIT_MILLIS);
         return result;
     }
 
-    protected static String optionalValue(ResourceBundle bundle, String key) {
+    protected void closeDataSource() throws SQLException {
+        if (dataSource instanceof BasicDataSource) {
+            ((BasicDataSource) dataSource).close();
+        }
+        dataSource = null;
+    }
+
+    protected ExecutorService createAssertExecutor() {
+        return Executors.newFixedThreadPool(assertThreads, new DaemonThreadFactory("dbunit-assert"));
+    }
+
+    protected void shutdownAssertExecutor() {
+        if (assertExecutor != null) {
+            assertExecutor.shutdown();
+        }
+        assertExecutor = null;
+    }
+
+    protected void startPrefetch() {
+        if (prefetchThreads <= 0) {
+            return;
+        }
+        List<String> paths = new ArrayList<String>();
+        for (FrameworkMethod method : getChildren()) {
+            DbUnitTest ann = testPlan.getAnnotation(method);
+            if (ann != null) {
+                paths.add(ann.init());
+                if (!ann.expected().isEmpty()) {
+                    paths.add(ann.expected());
+                }
+                prefetchEnds.put(method, paths.size());
+            }
+        }
+        prefetchExecutor = Executors.newFixedThreadPool(prefetchThreads, new DaemonThreadFactory("dbunit-prefetch"));
+        prefetcher = new DataSetPrefetcher(paths, prefetchWindow, prefetchExecutor, new DataSetPrefetcher.Loader() {
+            public IDataSet load(String path) {
+                return createDataSet(path);
+            }
+        });
+    }
+
+    protected void shutdownPrefetch() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+        prefetchExecutor = null;
+        prefetcher = null;
+        prefetchEnds.clear();
+    }
+
+    protected IDataSet createDataSet(String path) {
+        if (fixtureCacheDir == null || DataSetType.forPath(path) == DataSetType.gen) {
+            return testPlan.createDataSet(path, xmlType, xlsType);
+        }
+        String file = TestPlan.resourcePath(path);
+        IDataSet dataSet = new FixtureCache(new File(fixtureCacheDir)).get(file, getResource(file),
+            testPlan.getType(file, xmlType, xlsType), new DataSetPrefetcher.Loader() {
+                public IDataSet load(String p) {
+                    return testPlan.createDataSet(p, xmlType, xlsType);
+                }
+            });
+        String[] tableNames = TestPlan.tableNames(path);
         try {
-            return bundle.getString(key);
-        } catch (MissingResourceException ignore) {
-            return null;
+            return tableNames == null ? dataSet : new FilteredDataSet(tableNames, dataSet);
+        } catch (DataSetException e) {
+            throw new RuntimeException(e);
         }
     }
 
-    private static class SetAccessibleAction implements PrivilegedAction<Object> {
+    protected URL getResource(String path) {
+        return testPlan.getResource(path);
+    }
+
+    protected static void appendReport(File file, String line) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory: " + dir);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+        try {
+            writer.write(line);
+        } finally {
+            writer.close();
+        }
+    }
+
+    protected static String optionalValue(ResourceBundle bundle, String key) {
+        return optionalValue(bundle, key, null);
+    }
+
+    protected static String optionalValue(ResourceBundle bundle, String key, String defaultValue) {
+        return bundle.containsKey(key) ? bundle.getString(key) : defaultValue;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
 
-        private Field field;
+        private String name;
 
-        public SetAccessibleAction(Field field) {
-            this.field = field;
+        public DaemonThreadFactory(String name) {
+            this.name = name;
         }
 
-        public Object run() {
-            field.setAccessible(true);
-            return null;
+        public Thread newThread(Runnable r) {
+            Thread result = new Thread(r, name);
+            result.setDaemon(true);
+            return result;
+        }
+    }
+
+    /**
+     * {@link DatabaseConnection} that leaves the shared test connection open.
+     */
+    protected static class SharedDatabaseConnection extends DatabaseConnection {
+
+        public SharedDatabaseConnection(Connection connection, String schema) throws DatabaseUnitException {
+            super(connection, schema);
+        }
+
+        @Override
+        public void close() {
+            // closed by DbUnitStatement after assertion
+        }
+    }
+
+    /**
+     * Run the test method by {@link DbUnitStatement} for each scale factor, and assert growth of the time.
+     * @see ScalingTest
+     */
+    protected class ScalingStatement extends Statement {
+        private FrameworkMethod method;
+        private DbUnitTest ann;
+        private ScalingTest scaling;
+
+        protected ScalingStatement(FrameworkMethod method, DbUnitTest ann, ScalingTest scaling) {
+            this.method = method;
+            this.ann = ann;
+            this.scaling = scaling;
+        }
+
+        public void evaluate() throws Throwable {
+            int[] factors = scaling.factors().clone();
+            Arrays.sort(factors);
+            for (int i = 0; i < scaling.warmup(); i++) {
+                run(factors[0]);
+            }
+            long[] nanos = new long[factors.length];
+            for (int i = 0; i < factors.length; i++) {
+                nanos[i] = Long.MAX_VALUE;
+                for (int j = 0; j < Math.max(scaling.repeat(), 1); j++) {
+                    nanos[i] = Math.min(nanos[i], run(factors[i]));
+                }
+            }
+            new ScalingCurve(factors, nanos).assertWithin(scaling.complexity(), scaling.slack());
+        }
+
+        /**
+         * Run the test method with before and after methods and rules.
+         * @param factor scale factor
+         * @return time of the test method in nanoseconds
+         */
+        protected long run(int factor) throws Throwable {
+            TimedStatement body = new TimedStatement();
+            Statement stmt;
+            timedInvocation = body;
+            try {
+                stmt = DbUnitRunner.super.methodBlock(method);
+            } finally {
+                timedInvocation = null;
+            }
+            new DbUnitStatement(ann, stmt, scaling, factor).evaluate();
+            return body.nanos;
+        }
+    }
+
+    /**
+     * Invoke the test method from concurrent threads, each with its own test instance and connection.
+     * @see LoadTest
+     */
+    protected class LoadStatement extends Statement {
+        private FrameworkMethod method;
+        private LoadTest load;
+        private CountDownLatch ready;
+        private CountDownLatch start = new CountDownLatch(1);
+        private AtomicBoolean stop = new AtomicBoolean();
+
+        protected LoadStatement(FrameworkMethod method, LoadTest load) {
+            this.method = method;
+            this.load = load;
+        }
+
+        public void evaluate() throws Throwable {
+            int threads = Math.max(load.threads(), 1);
+            if (dataSource instanceof BasicDataSource) {
+                // each thread holds its own connection besides the test connection
+                BasicDataSource pool = (BasicDataSource) dataSource;
+                pool.setMaxActive(Math.max(pool.getMaxActive(), threads + 1));
+            }
+            ready = new CountDownLatch(threads);
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("dbunit-load"));
+            try {
+                List<LoadWorker> workers = new ArrayList<LoadWorker>();
+                for (int i = 0; i < threads; i++) {
+                    workers.add(new LoadWorker());
+                }
+                List<Future<LatencyHistogram>> futures = new ArrayList<Future<LatencyHistogram>>();
+                for (LoadWorker worker : workers) {
+                    futures.add(executor.submit(worker));
+                }
+                ready.await();
+                long begin = System.nanoTime();
+                start.countDown();
+                LatencyHistogram histogram = new LatencyHistogram();
+                Throwable failure = null;
+                for (Future<LatencyHistogram> future : futures) {
+                    try {
+                        histogram.add(future.get());
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                report(threads, histogram, System.nanoTime() - begin);
+            } finally {
+                stop.set(true);
+                executor.shutdownNow();
+            }
+        }
+
+        protected void report(int threads, LatencyHistogram histogram, long nanos) throws IOException {
+            String line = String.format(Locale.ENGLISH, "%s.%s: %d threads, %d calls in %.3fs, %.1f calls/s, %s%n",
+                getTestClass().getJavaClass().getSimpleName(), method.getName(), threads, histogram.getCount(),
+                nanos / 1e9, histogram.getCount() * 1e9 / Math.max(nanos, 1), histogram);
+            appendReport(new File(load.reportFile()
+                .replace("{class}", getTestClass().getJavaClass().getSimpleName())
+                .replace("{method}", method.getName())), line);
+        }
+
+        /**
+         * Run before methods, the invocations and after methods in a thread.
+         */
+        private class LoadWorker implements Callable<LatencyHistogram> {
+            private LatencyHistogram histogram = new LatencyHistogram();
+            private boolean waiting = true;
+            private Connection conn;
+            private Statement statement;
+
+            /**
+             * Build the statement of the worker, with before and after methods and rules, in the runner thread.
+             */
+            LoadWorker() {
+                loadWorker = this;
+                try {
+                    statement = DbUnitRunner.super.methodBlock(method);
+                } finally {
+                    loadWorker = null;
+                }
+            }
+
+            Object createTest() throws Exception {
+                conn = testPlan.getConnectionFields().isEmpty() ? null : dataSource.getConnection();
+                Object test = getTestClass().getOnlyConstructor().newInstance();
+                inject(test, conn);
+                return test;
+            }
+
+            Statement invoker(final Statement body) {
+                return new Statement() {
+                    public void evaluate() throws Throwable {
+                        invoke(body);
+                    }
+                };
+            }
+
+            public LatencyHistogram call() throws Exception {
+                try {
+                    statement.evaluate();
+                    if (conn != null && !conn.getAutoCommit()) {
+                        conn.commit();
+                    }
+                    return histogram;
+                } catch (Throwable e) {
+                    stop.set(true);
+                    if (conn != null && !conn.getAutoCommit()) {
+                        conn.rollback();
+                    }
+                    throw exception(e);
+                } finally {
+                    if (waiting) {
+                        ready.countDown();
+                    }
+                    if (conn != null) {
+                        conn.close();
+                    }
+                }
+            }
+
+            private void invoke(Statement body) throws Throwable {
+                for (int i = 0; i < load.warmup(); i++) {
+                    body.evaluate();
+                }
+                waiting = false;
+                ready.countDown();
+                start.await();
+                long deadline = System.nanoTime() + load.duration() * 1000000;
+                for (int i = 0; !stop.get(); i++) {
+                    long now = System.nanoTime();
+                    if (load.duration() > 0 ? now - deadline >= 0 : i >= load.iterations()) {
+                        break;
+                    }
+                    body.evaluate();
+                    histogram.record(System.nanoTime() - now);
+                }
+            }
+        }
+
+        private Exception exception(Throwable t) {
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            return t instanceof Exception ? (Exception) t : new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Report JDBC usage of the test method and assert its limit.
+     * @see JdbcLimit
+     */
+    protected class JdbcStatsStatement extends Statement {
+        private FrameworkMethod method;
+        private JdbcLimit limit;
+        private JdbcStats stats;
+        private Statement statement;
+
+        protected JdbcStatsStatement(FrameworkMethod method, JdbcLimit limit, JdbcStats stats, Statement statement) {
+            this.method = method;
+            this.limit = limit;
+            this.stats = stats;
+            this.statement = statement;
+        }
+
+        public void evaluate() throws Throwable {
+            statement.evaluate();
+            if (jdbcReportFile != null) {
+                appendReport(new File(jdbcReportFile), String.format("%s.%s: %s%n",
+                    getTestClass().getJavaClass().getSimpleName(), method.getName(), stats));
+            }
+            if (limit != null) {
+                stats.assertWithin(limit);
+            }
+        }
+    }
+
+    private class TimedStatement extends Statement {
+        private Statement statement;
+        private long nanos;
+
+        public void evaluate() throws Throwable {
+            long start = nanoTime();
+            statement.evaluate();
+            nanos = nanoTime() - start;
         }
     }
 
     protected class DbUnitStatement extends Statement {
         private DbUnitTest ann;
         private Statement statement;
+        private ScalingTest scaling;
+        private int factor = 1;
 
         protected DbUnitStatement(DbUnitTest ann, Statement statement) {
             this.ann = ann;
             this.statement = statement;
         }
 
+        protected DbUnitStatement(DbUnitTest ann, Statement statement, ScalingTest scaling, int factor) {
+            this(ann, statement);
+            this.scaling = scaling;
+            this.factor = factor;
+        }
+
         public void evaluate() throws Throwable {
-            IDatabaseConnection conn = createDatabaseConnection();
             try {
-                executeUpdate(conn, ann.sql());
-                IDataSet initData = dataSet(load(ann.init())).nullValue(ann.nullValue()).toDataSet();
-                ann.operation().toDatabaseOperation().execute(conn, initData);
-                statement.evaluate();
-                if (testConnection != null) {
-                    testConnection.commit();
+                IDatabaseConnection conn = createDatabaseConnection();
+                try {
+                    String[] sql = sqlStatements();
+                    if (ann.batchSql()) {
+                        executeBatch(conn, sql);
+                    } else {
+                        executeUpdate(conn, sql);
+                    }
+                    IDataSet initData = scale(conn, dataSet(load(ann.init())).nullValue(ann.nullValue()).toDataSet());
+                    ann.operation().toDatabaseOperation().execute(conn, initData);
+                    sequenceResetter.reset(conn, initData, ann.resetIdentity(), ann.resetSequences());
+                    if (isSharedConnection()) {
+                        testConnection.commit();
+                    }
+                    statement.evaluate();
+                    if (testConnection != null) {
+                        testConnection.commit();
+                    }
+                } catch (Throwable e) {
+                    if (testConnection != null) {
+                        testConnection.rollback();
+                    }
+                    throw e;
+                } finally {
+                    if (!isSharedConnection()) {
+                        releaseConnection();
+                    }
+                    conn.close();
                 }
-            } catch (Throwable e) {
-                if (testConnection != null) {
-                    testConnection.rollback();
+                if (!ann.expected().isEmpty() && factor == 1) {
+                    assertTables();
                 }
-                throw e;
             } finally {
-                if (testConnection != null) {
-                    testConnection.close();
-                }
-                conn.close();
+                releaseConnection();
             }
-            if (!ann.expected().isEmpty()) {
-                assertTables();
+        }
+
+        protected IDataSet scale(IDatabaseConnection conn, IDataSet dataSet) throws SQLException, DataSetException {
+            if (factor == 1) {
+                return dataSet;
             }
+            IDataSet database = conn.createDataSet();
+            List<String> keyColumns = new ArrayList<String>(Arrays.asList(scaling.offsetColumns()));
+            for (String tableName : ScaledDataSet.tableNames(dataSet, scaling.tables())) {
+                for (Column column : database.getTableMetaData(tableName).getPrimaryKeys()) {
+                    keyColumns.add(tableName + "." + column.getColumnName());
+                }
+            }
+            return new ScaledDataSet(dataSet, factor, scaling.tables(),
+                keyColumns.toArray(new String[keyColumns.size()]));
         }
 
         protected void assertTables() {
@@ -230,11 +789,15 @@ public class DbUnitRunner extends BlockJUnit4ClassRunner {
                     .nullValue(ann.nullValue())
                     .rtrim(ann.rtrim())
                     .toDataSet();
-                IDataSet actual = dataSet(conn.createDataSet(expected.getTableNames()))
-                    .excludeColumns(ann.excludeColumns())
-                    .rtrim(ann.rtrim())
-                    .toDataSet();
-                Assertion.assertEquals(expected, actual);
+                String[] tableNames = expected.getTableNames();
+                IDataSet database = conn.createDataSet(tableNames);
+                if (assertThreads > 1 && tableNames.length > 1 && !isSharedConnection()) {
+                    assertTablesConcurrently(expected, database);
+                } else {
+                    for (String tableName : tableNames) {
+                        assertTable(conn, database.getTableMetaData(tableName), expected.getTable(tableName));
+                    }
+                }
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             } catch (DatabaseUnitException e) {
@@ -248,22 +811,118 @@ public class DbUnitRunner extends BlockJUnit4ClassRunner {
             }
         }
 
+        protected void assertTable(IDatabaseConnection conn, ITableMetaData metaData, ITable table)
+            throws SQLException, DatabaseUnitException {
+
+            String tableName = table.getTableMetaData().getTableName();
+            if (isChecksumEnabled()
+                && tableChecksum.matches(conn, metaData, table, ann.rtrim(), checksumKey(tableName))) {
+                return;
+            }
+            ann.assertMode().toTableAssertion().assertTable(conn, metaData, table, ann);
+        }
+
+        protected void assertTablesConcurrently(IDataSet expected, IDataSet database)
+            throws SQLException, DatabaseUnitException {
+
+            if (assertExecutor == null) {
+                assertExecutor = createAssertExecutor();
+            }
+            String[] tableNames = expected.getTableNames();
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (String tableName : tableNames) {
+                final ITableMetaData metaData = database.getTableMetaData(tableName);
+                // load metadata through this connection before other threads use it
+                metaData.getPrimaryKeys();
+                final ITable table = expected.getTable(tableName);
+                futures.add(assertExecutor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        IDatabaseConnection conn = createDatabaseConnection();
+                        try {
+                            assertTable(conn, metaData, table);
+                        } finally {
+                            conn.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            List<Throwable> failures = new ArrayList<Throwable>();
+            StringBuilder message = new StringBuilder();
+            for (int i = 0; i < tableNames.length; i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                    message.append("\n[").append(tableNames[i]).append("] ").append(e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            if (failures.size() == 1) {
+                rethrow(failures.get(0));
+            } else if (!failures.isEmpty()) {
+                AssertionError error = new AssertionError(failures.size() + " tables failed:" + message);
+                error.initCause(failures.get(0));
+                throw error;
+            }
+        }
+
+        private void rethrow(Throwable t) throws SQLException, DatabaseUnitException {
+            if (t instanceof Error) {
+                throw (Error) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof SQLException) {
+                throw (SQLException) t;
+            } else if (t instanceof DatabaseUnitException) {
+                throw (DatabaseUnitException) t;
+            }
+            throw new RuntimeException(t);
+        }
+
+        protected boolean isChecksumEnabled() {
+            // a subset never has the checksum of the whole table
+            return assertChecksum && ann.assertMode() != AssertMode.SUBSET;
+        }
+
+        protected String checksumKey(String tableName) {
+            return getResource(ann.expected()) + "#" + tableName + Arrays.toString(ann.excludeColumns())
+                + '\u0000' + ann.nullValue() + '\u0000' + ann.rtrim();
+        }
+
         protected IDataSet load(String path) {
-            URL url = getTestClass().getJavaClass().getResource(path);
-            if (url == null) {
-                throw new RuntimeException(new FileNotFoundException(path));
+            DataSetPrefetcher p = prefetcher;
+            return p == null ? createDataSet(path) : p.get(path);
+        }
+
+        protected URL getResource(String path) {
+            return DbUnitRunner.this.getResource(path);
+        }
+
+        protected String[] sqlStatements() {
+            if (ann.sqlScript().isEmpty()) {
+                return ann.sql();
             }
-            String suffix = path.substring(path.lastIndexOf('.') + 1).toLowerCase(Locale.getDefault());
             try {
-                return DataSetType.valueOf(suffix).createDataSet(url);
-            } catch (Exception e) {
+                List<String> result = SqlScript.load(getResource(ann.sqlScript()));
+                result.addAll(Arrays.asList(ann.sql()));
+                return result.toArray(new String[result.size()]);
+            } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
 
+        protected boolean isSharedConnection() {
+            return shareConnection && testConnection != null;
+        }
+
         protected IDatabaseConnection createDatabaseConnection() {
             try {
-                DatabaseDataSourceConnection result = new DatabaseDataSourceConnection(dataSource, schema);
+                IDatabaseConnection result = isSharedConnection()
+                    ? new SharedDatabaseConnection(testConnection, schema)
+                    : new DatabaseDataSourceConnection(dataSource, schema);
                 DatabaseConfig config = result.getConfig();
                 config.setPropertiesByString(configProperties);
                 return result;
@@ -290,5 +949,26 @@ public class DbUnitRunner extends BlockJUnit4ClassRunner {
                 }
             }
         }
+
+        protected void executeBatch(IDatabaseConnection conn, String... sql) throws SQLException {
+            List<String> batch = new ArrayList<String>();
+            for (String s : sql) {
+                if (!s.isEmpty()) {
+                    batch.add(s);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            java.sql.Statement stmt = conn.getConnection().createStatement();
+            try {
+                for (String s : batch) {
+                    stmt.addBatch(s);
+                }
+                stmt.executeBatch();
+            } finally {
+                stmt.close();
+            }
+        }
     }
 }
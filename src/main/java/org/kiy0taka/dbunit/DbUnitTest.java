@@ -20,10 +20,16 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import org.dbunit.Assertion;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.dataset.Column;
 import org.dbunit.dataset.DataSetException;
 import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
 import org.dbunit.dataset.SortedDataSet;
+import org.dbunit.dataset.datatype.DataType;
 import org.dbunit.operation.DatabaseOperation;
+import org.kiy0taka.dbunit.DataSetBuilder.RTrimTable;
 
 
 /**
@@ -35,12 +41,14 @@ import org.dbunit.operation.DatabaseOperation;
 public @interface DbUnitTest {
 
     /**
-     * Initial dataset file.
+     * Initial dataset file, typed by {@link DataSetType}. (i.e. "emp.xml", "emp.xml.gz", "all.zip")
+     * Tables can be selected by <code>#</code> and table names. (i.e. "all.xml#dept,emp")
      */
     String init();
 
     /**
      * Expected dataset file.
+     * Tables can be selected as {@link #init()}.
      */
     String expected() default "";
 
@@ -75,6 +83,64 @@ public @interface DbUnitTest {
      */
     String[] sql() default "";
 
+    /**
+     * Execute update statements in this script file before {@link #sql()}.
+     * Statements are separated by semicolons.
+     */
+    String sqlScript() default "";
+
+    /**
+     * Execute {@link #sqlScript()} and {@link #sql()} statements as a single batch.
+     */
+    boolean batchSql() default false;
+
+    /**
+     * Reset identity columns and sequences of column defaults of the initial dataset tables after setup.
+     * Next value is max value in the initial dataset plus one.
+     */
+    boolean resetIdentity() default false;
+
+    /**
+     * Reset sequences after setup.
+     * Next value is max column value in the initial dataset plus one.
+     * (i.e. {"my_seq=emp.empno"})
+     */
+    String[] resetSequences() default "";
+
+    /**
+     * Expected table assertion mode.
+     */
+    AssertMode assertMode() default AssertMode.FULL;
+
+    /**
+     * Assert row count of the expected tables too.
+     * Used with {@link AssertMode#SUBSET}.
+     */
+    boolean assertRowCount() default false;
+
+    /**
+     * Maximum number of database rows sorted in memory by {@link AssertMode#EXTERNAL_SORT}.
+     * Larger tables are sorted in temporary files.
+     */
+    int sortBufferRows() default 10000;
+
+    /**
+     * Table value comparison.
+     */
+    Comparison comparison() default Comparison.DBUNIT;
+
+    /**
+     * Maximum number of value differences reported per table by {@link Comparison#TYPED}.
+     * The comparison stops there unless {@link #diffFile()} is specified.
+     */
+    int maxDiffs() default 1;
+
+    /**
+     * File all value differences are written to by {@link Comparison#TYPED}.
+     * <code>{table}</code> is replaced by the table name. (i.e. "target/diff/{table}.txt")
+     */
+    String diffFile() default "";
+
     /**
      * Annotation of Database operation.
      * @author kiy0taka
@@ -119,7 +185,13 @@ public @interface DbUnitTest {
         /**
          * @see DatabaseOperation#CLEAN_INSERT
          */
-        CLEAN_INSERT(DatabaseOperation.CLEAN_INSERT);
+        CLEAN_INSERT(DatabaseOperation.CLEAN_INSERT),
+
+        /**
+         * Truncate tables with referential integrity disabled, then insert.
+         * @see TruncateInsertOperation
+         */
+        TRUNCATE_INSERT(new TruncateInsertOperation());
 
         private DatabaseOperation operation;
 
@@ -136,6 +208,100 @@ public @interface DbUnitTest {
         }
     }
 
+    /**
+     * Expected table assertion mode.
+     * @author kiy0taka
+     */
+    public enum AssertMode {
+
+        /**
+         * @see FullTableAssertion
+         */
+        FULL(new FullTableAssertion()),
+
+        /**
+         * Compare only rows whose primary keys appear in the expected table.
+         * @see SubsetTableAssertion
+         */
+        SUBSET(new SubsetTableAssertion()),
+
+        /**
+         * Compare inside the database by <code>EXCEPT</code>.
+         * @see ExceptTableAssertion
+         */
+        EXCEPT(new ExceptTableAssertion()),
+
+        /**
+         * Merge rows sorted in bounded memory, for large tables without primary keys.
+         * @see ExternalSortTableAssertion
+         */
+        EXTERNAL_SORT(new ExternalSortTableAssertion());
+
+        private TableAssertion assertion;
+
+        private AssertMode(TableAssertion assertion) {
+            this.assertion = assertion;
+        }
+
+        /**
+         * Convert to {@link TableAssertion}.
+         * @return {@link TableAssertion}
+         */
+        public TableAssertion toTableAssertion() {
+            return assertion;
+        }
+    }
+
+    /**
+     * Table value comparison.
+     * @author kiy0taka
+     */
+    public enum Comparison {
+
+        /**
+         * Compare by {@link DataType#compare(Object, Object)} for each value.
+         */
+        DBUNIT {
+
+            /**
+             * @see org.kiy0taka.dbunit.DbUnitTest.Comparison#assertEquals(ITable, ITable, Column[], DbUnitTest)
+             */
+            public void assertEquals(ITable expected, ITable actual, Column[] keys, DbUnitTest ann)
+                throws DatabaseUnitException {
+
+                Assertion.assertEquals(expected, ann.rtrim() ? new RTrimTable(actual) : actual, keys);
+            }
+        },
+
+        /**
+         * Compare by comparators specialized by column data type.
+         */
+        TYPED {
+
+            /**
+             * @see org.kiy0taka.dbunit.DbUnitTest.Comparison#assertEquals(ITable, ITable, Column[], DbUnitTest)
+             */
+            public void assertEquals(ITable expected, ITable actual, Column[] keys, DbUnitTest ann)
+                throws DatabaseUnitException {
+
+                String tableName = expected.getTableMetaData().getTableName();
+                TypedAssertion.assertEquals(expected, actual, ann.rtrim(), keys,
+                    new DiffReporter(tableName, ann.maxDiffs(), ann.diffFile()));
+            }
+        };
+
+        /**
+         * Assert tables are equal.
+         * @param expected expected table
+         * @param actual actual table
+         * @param keys key columns identifying rows in the failure message
+         * @param ann test annotation
+         * @throws DatabaseUnitException not equals
+         */
+        public abstract void assertEquals(ITable expected, ITable actual, Column[] keys, DbUnitTest ann)
+            throws DatabaseUnitException;
+    }
+
     /**
      * DataSet sort storategy.
      * @author kiy0taka
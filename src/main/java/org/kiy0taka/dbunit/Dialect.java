@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Database specific SQL.
+ * @author kiy0taka
+ */
+public enum Dialect {
+
+    /**
+     * SQL:2003.
+     */
+    STANDARD,
+
+    /**
+     * H2 Database.
+     */
+    H2 {
+
+        /**
+         * @see org.kiy0taka.dbunit.Dialect#disableReferentialIntegrity()
+         */
+        public String disableReferentialIntegrity() {
+            return "SET REFERENTIAL_INTEGRITY FALSE";
+        }
+
+        /**
+         * @see org.kiy0taka.dbunit.Dialect#enableReferentialIntegrity()
+         */
+        public String enableReferentialIntegrity() {
+            return "SET REFERENTIAL_INTEGRITY TRUE";
+        }
+
+        /**
+         * @see org.kiy0taka.dbunit.Dialect#digestAlgorithm()
+         */
+        public String digestAlgorithm() {
+            return "SHA-256";
+        }
+
+        /**
+         * @see org.kiy0taka.dbunit.Dialect#hexDigest(java.lang.String)
+         */
+        public String hexDigest(String expression) {
+            return "CAST(HASH('SHA256', STRINGTOUTF8(" + expression + "), 1) AS VARCHAR)";
+        }
+    },
+
+    /**
+     * MySQL.
+     */
+    MYSQL {
+
+        /**
+         * @see org.kiy0taka.dbunit.Dialect#restartIdentity(java.lang.String, java.lang.String, long)
+         */
+        public String restartIdentity(String table, String column, long value) {
+            return "ALTER TABLE " + table + " AUTO_INCREMENT = " + value;
+        }
+
+        /**
+         * @see org.kiy0taka.dbunit.Dialect#disableReferentialIntegrity()
+         */
+        public String disableReferentialIntegrity() {
+            return "SET FOREIGN_KEY_CHECKS = 0";
+        }
+
+        /**
+         * @see org.kiy0taka.dbunit.Dialect#enableReferentialIntegrity()
+         */
+        public String enableReferentialIntegrity() {
+            return "SET FOREIGN_KEY_CHECKS = 1";
+        }
+
+        /**
+         * @see org.kiy0taka.dbunit.Dialect#createTemporaryTable(java.lang.String, java.lang.String)
+         */
+        public String createTemporaryTable(String table, String select) {
+            return "CREATE TEMPORARY TABLE " + table + " AS " + select;
+        }
+
+        /**
+         * @see org.kiy0taka.dbunit.Dialect#except()
+         */
+        public String except() {
+            return null;
+        }
+    },
+
+    /**
+     * PostgreSQL.
+     */
+    POSTGRESQL {
+
+        /**
+         * @see org.kiy0taka.dbunit.Dialect#restartIdentity(java.lang.String, java.lang.String, long)
+         */
+        public String restartIdentity(String table, String column, long value) {
+            return "SELECT setval(pg_get_serial_sequence('" + table + "', '" + column + "'), " + value + ", false)";
+        }
+    };
+
+    /**
+     * Restart sequence.
+     * @param sequence sequence name
+     * @param value next value
+     * @return SQL
+     */
+    public String restartSequence(String sequence, long value) {
+        return "ALTER SEQUENCE " + sequence + " RESTART WITH " + value;
+    }
+
+    /**
+     * Restart identity (auto increment) column.
+     * @param table table name
+     * @param column column name
+     * @param value next value
+     * @return SQL
+     */
+    public String restartIdentity(String table, String column, long value) {
+        return "ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + value;
+    }
+
+    /**
+     * Truncate table.
+     * @param table table name
+     * @return SQL
+     */
+    public String truncateTable(String table) {
+        return "TRUNCATE TABLE " + table;
+    }
+
+    /**
+     * Disable foreign key constraint checks.
+     * @return SQL, or null if not supported
+     */
+    public String disableReferentialIntegrity() {
+        return null;
+    }
+
+    /**
+     * Enable foreign key constraint checks.
+     * @return SQL, or null if not supported
+     */
+    public String enableReferentialIntegrity() {
+        return null;
+    }
+
+    /**
+     * Create temporary table visible only in the current connection.
+     * @param table table name
+     * @param select query defining the columns
+     * @return SQL
+     */
+    public String createTemporaryTable(String table, String select) {
+        return "CREATE LOCAL TEMPORARY TABLE " + table + " AS " + select;
+    }
+
+    /**
+     * Drop table.
+     * @param table table name
+     * @return SQL
+     */
+    public String dropTable(String table) {
+        return "DROP TABLE " + table;
+    }
+
+    /**
+     * Set difference operator.
+     * @return operator, or null if not supported
+     */
+    public String except() {
+        return "EXCEPT";
+    }
+
+    /**
+     * Remove trailing spaces.
+     * @param expression string expression
+     * @return SQL expression
+     */
+    public String rtrim(String expression) {
+        return "RTRIM(" + expression + ")";
+    }
+
+    /**
+     * {@link java.security.MessageDigest} algorithm of {@link #hexDigest(String)}.
+     * @return algorithm name, or null if not supported
+     */
+    public String digestAlgorithm() {
+        return null;
+    }
+
+    /**
+     * Lower case hexadecimal digest of the UTF-8 bytes of a string.
+     * @param expression string expression
+     * @return SQL expression, or null if not supported
+     */
+    public String hexDigest(String expression) {
+        return null;
+    }
+
+    /**
+     * Detect dialect from database product name.
+     * @param connection connection
+     * @return detected dialect, or {@link #STANDARD}
+     * @throws SQLException database access error
+     */
+    public static Dialect of(Connection connection) throws SQLException {
+        String productName = connection.getMetaData().getDatabaseProductName().toUpperCase(Locale.ENGLISH);
+        for (Dialect dialect : values()) {
+            if (productName.startsWith(dialect.name())) {
+                return dialect;
+            }
+        }
+        return STANDARD;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import junit.framework.AssertionFailedError;
+
+/**
+ * Collect value differences of a table.
+ * At most <code>maxDiffs</code> differences are kept for the failure message,
+ * and every difference is streamed to the diff file if specified.
+ * The diff file is created on the first difference.
+ * @author kiy0taka
+ */
+public class DiffReporter {
+
+    private static final String TABLE_PLACEHOLDER = "{table}";
+
+    private String tableName;
+
+    private int maxDiffs;
+
+    private File file;
+
+    private Writer writer;
+
+    private StringBuilder message = new StringBuilder();
+
+    private int count;
+
+    /**
+     * Create reporter.
+     * @param tableName table name
+     * @param maxDiffs maximum number of differences in the failure message
+     * @param diffFile diff file path, <code>{table}</code> is replaced by the table name.
+     * No diff file is written if empty.
+     */
+    public DiffReporter(String tableName, int maxDiffs, String diffFile) {
+        this.tableName = tableName;
+        this.maxDiffs = Math.max(maxDiffs, 1);
+        this.file = diffFile == null || diffFile.length() == 0
+            ? null : new File(diffFile.replace(TABLE_PLACEHOLDER, tableName));
+    }
+
+    /**
+     * Whether the first difference should fail immediately.
+     * @return true if only one difference is reported without diff file
+     */
+    public boolean isFailFast() {
+        return maxDiffs == 1 && file == null;
+    }
+
+    /**
+     * Add difference.
+     * @param row row description
+     * @param column column name
+     * @param expected expected value
+     * @param actual actual value
+     * @return true if the comparison should go on
+     * @throws IOException diff file error
+     */
+    public boolean add(String row, String column, Object expected, Object actual) throws IOException {
+        count++;
+        String line = row + ", col=" + column + " expected:<" + expected + "> but was:<" + actual + ">";
+        if (count <= maxDiffs) {
+            message.append('\n').append(line);
+        }
+        if (file == null) {
+            return count < maxDiffs;
+        }
+        if (writer == null) {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create directory: " + dir);
+            }
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        }
+        writer.write(line);
+        writer.write('\n');
+        return true;
+    }
+
+    /**
+     * Close the diff file and fail if any difference was added.
+     * @throws IOException diff file error
+     */
+    public void report() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        if (count == 0) {
+            return;
+        }
+        StringBuilder header = new StringBuilder();
+        if (file == null && count == maxDiffs) {
+            header.append("at least ");
+        }
+        header.append(count).append(" value differences (table=").append(tableName);
+        if (file != null) {
+            header.append(", diff=").append(file.getPath());
+        }
+        header.append(")");
+        throw new AssertionFailedError(header.append(message).toString());
+    }
+
+    /**
+     * Close the diff file without reporting.
+     */
+    public void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.junit.Assert;
+
+/**
+ * Compare tables inside the database.
+ * The expected table is loaded into a temporary table and compared with the database table
+ * by <code>EXCEPT</code> in both directions, so only differing rows are transferred.
+ * Rows are grouped with their count before <code>EXCEPT</code>, so duplicate rows must occur as many times.
+ * Databases without <code>EXCEPT</code>, expected columns missing in the database,
+ * or expected numbers with more decimal places than the database column are compared by {@link FullTableAssertion}.
+ * @author kiy0taka
+ */
+public class ExceptTableAssertion extends FullTableAssertion {
+
+    /**
+     * Temporary table name prefix.
+     */
+    public static final String TEMPORARY_TABLE_PREFIX = "dbunit_";
+
+    /**
+     * Default number of rows per insert batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final int batchSize;
+
+    /**
+     * Create assertion with {@link #DEFAULT_BATCH_SIZE}.
+     */
+    public ExceptTableAssertion() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create assertion.
+     * @param batchSize number of rows per insert batch
+     */
+    public ExceptTableAssertion(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @see org.kiy0taka.dbunit.FullTableAssertion#assertTable(IDatabaseConnection, ITableMetaData, ITable, DbUnitTest)
+     */
+    public void assertTable(IDatabaseConnection conn, ITableMetaData metaData, ITable expected, DbUnitTest ann)
+        throws SQLException, DatabaseUnitException {
+
+        Dialect dialect = Dialect.of(conn.getConnection());
+        Column[] columns = columns(metaData, expected.getTableMetaData());
+        if (dialect.except() == null || columns.length == 0
+            || columns.length != expected.getTableMetaData().getColumns().length) {
+            super.assertTable(conn, metaData, expected, ann);
+            return;
+        }
+        TableQuery query = createQuery(conn, metaData, expected.getTableMetaData());
+        int[] scales = query.scales(conn.getConnection());
+        if (!fitsScales(expected, columns, scales)) {
+            super.assertTable(conn, metaData, expected, ann);
+            return;
+        }
+        String tableName = query.getQualifiedTableName();
+        String temporaryTable = query.escape(TEMPORARY_TABLE_PREFIX + metaData.getTableName());
+        execute(conn, dialect.createTemporaryTable(temporaryTable,
+            select(query, dialect, columns, tableName, false) + " where 1 = 0"));
+        try {
+            insert(conn, temporaryTable, query, columns, scales, expected);
+            String actualSelect = groupBy(query, dialect, columns, tableName, ann.rtrim());
+            String expectedSelect = groupBy(query, dialect, columns, temporaryTable, ann.rtrim());
+            List<String> missing = rows(conn, expectedSelect + ' ' + dialect.except() + ' ' + actualSelect);
+            List<String> unexpected = rows(conn, actualSelect + ' ' + dialect.except() + ' ' + expectedSelect);
+            int rowCount = count(conn, tableName);
+            if (!missing.isEmpty() || !unexpected.isEmpty() || rowCount != expected.getRowCount()) {
+                StringBuilder message = new StringBuilder("table ")
+                    .append(expected.getTableMetaData().getTableName()).append(" differs (expected rows:<")
+                    .append(expected.getRowCount()).append(">, actual rows:<").append(rowCount).append(">)");
+                for (String row : missing) {
+                    message.append("\nmissing row: ").append(row);
+                }
+                for (String row : unexpected) {
+                    message.append("\nunexpected row: ").append(row);
+                }
+                Assert.fail(message.toString());
+            }
+        } finally {
+            execute(conn, dialect.dropTable(temporaryTable));
+        }
+    }
+
+    private void insert(IDatabaseConnection conn, String table, TableQuery query, Column[] columns, int[] scales,
+        ITable expected) throws SQLException, DataSetException {
+
+        StringBuilder sql = new StringBuilder("insert into ").append(table).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(query.escape(columns[i].getColumnName()));
+            values.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") values (").append(values).append(')');
+        PreparedStatement stmt = conn.getConnection().prepareStatement(sql.toString());
+        try {
+            int rowCount = expected.getRowCount();
+            for (int row = 0; row < rowCount; row++) {
+                for (int i = 0; i < columns.length; i++) {
+                    Object value = expected.getValue(row, columns[i].getColumnName());
+                    if (value != null && columns[i].getDataType().getTypeClass() == BigDecimal.class) {
+                        // numeric values must have the database column scale to be equal in set operations
+                        BigDecimal number = (BigDecimal) columns[i].getDataType().typeCast(value);
+                        value = number.setScale(scales[i], RoundingMode.UNNECESSARY);
+                    }
+                    columns[i].getDataType().setSqlValue(value, i + 1, stmt);
+                }
+                stmt.addBatch();
+                if ((row + 1) % batchSize == 0 || row + 1 == rowCount) {
+                    stmt.executeBatch();
+                }
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Whether all expected numbers are stored in the database columns without rounding.
+     */
+    private static boolean fitsScales(ITable expected, Column[] columns, int[] scales) throws DataSetException {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].getDataType().getTypeClass() != BigDecimal.class) {
+                continue;
+            }
+            for (int row = 0; row < expected.getRowCount(); row++) {
+                BigDecimal value = (BigDecimal) columns[i].getDataType()
+                    .typeCast(expected.getValue(row, columns[i].getColumnName()));
+                if (value != null && value.stripTrailingZeros().scale() > scales[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String select(TableQuery query, Dialect dialect, Column[] columns, String table, boolean rtrim) {
+        return "select " + columns(query, dialect, columns, rtrim) + " from " + table;
+    }
+
+    private static String groupBy(TableQuery query, Dialect dialect, Column[] columns, String table, boolean rtrim) {
+        String select = columns(query, dialect, columns, rtrim);
+        return "select " + select + ", count(*) from " + table + " group by " + select;
+    }
+
+    private static String columns(TableQuery query, Dialect dialect, Column[] columns, boolean rtrim) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            String column = query.escape(columns[i].getColumnName());
+            sb.append(i == 0 ? "" : ", ");
+            sb.append(rtrim && columns[i].getDataType().getTypeClass() == String.class
+                ? dialect.rtrim(column) : column);
+        }
+        return sb.toString();
+    }
+
+    private static List<String> rows(IDatabaseConnection conn, String sql) throws SQLException {
+        List<String> result = new ArrayList<String>();
+        Statement stmt = conn.getConnection().createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery(sql);
+            // the last column is the count of the row
+            int columnCount = rs.getMetaData().getColumnCount() - 1;
+            while (rs.next()) {
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                long count = rs.getLong(columnCount + 1);
+                result.add(Arrays.toString(row) + (count == 1 ? "" : " x" + count));
+            }
+        } finally {
+            stmt.close();
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static void execute(IDatabaseConnection conn, String sql) throws SQLException {
+        Statement stmt = conn.getConnection().createStatement();
+        try {
+            stmt.execute(sql);
+        } finally {
+            stmt.close();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.junit.Assert;
+import org.kiy0taka.dbunit.DbUnitTest.Sort;
+
+/**
+ * Compare tables by merging sorted rows, for large tables without primary keys.
+ * Database rows are streamed and, with {@link Sort#AUTO}, sorted by all columns in runs of
+ * {@link DbUnitTest#sortBufferRows()} rows spilled to temporary files and merged,
+ * so memory is bounded by the buffer size rather than the table size.
+ * With {@link Sort#NONE} rows are compared in primary key order, or in the database order without one.
+ * Expected columns missing in the database are compared by {@link FullTableAssertion}.
+ * @author kiy0taka
+ */
+public class ExternalSortTableAssertion extends FullTableAssertion {
+
+    private static final Pattern RTRIM = Pattern.compile(" +$");
+
+    /**
+     * @see org.kiy0taka.dbunit.FullTableAssertion#assertTable(IDatabaseConnection, ITableMetaData, ITable, DbUnitTest)
+     */
+    public void assertTable(IDatabaseConnection conn, ITableMetaData metaData, ITable expected, DbUnitTest ann)
+        throws SQLException, DatabaseUnitException {
+
+        Column[] columns = columns(metaData, expected.getTableMetaData());
+        if (columns.length == 0 || columns.length != expected.getTableMetaData().getColumns().length) {
+            super.assertTable(conn, metaData, expected, ann);
+            return;
+        }
+        boolean sort = ann.sort() == Sort.AUTO;
+        TableQuery query = createQuery(conn, metaData, expected.getTableMetaData());
+        if (sort) {
+            query.orderBy();
+        }
+        Comparator<Object[]> comparator = new RowComparator(columns);
+        List<Object[]> expectedRows = rows(expected, columns);
+        if (sort) {
+            Collections.sort(expectedRows, comparator);
+        }
+        List<Run> runs = new ArrayList<Run>();
+        Statement stmt = conn.getConnection().createStatement();
+        try {
+            stmt.setFetchSize(Math.min(ann.sortBufferRows(), 1000));
+            Iterator<Object[]> actualRows = new ResultSetIterator(stmt.executeQuery(query.toString()), columns,
+                ann.rtrim());
+            if (sort) {
+                actualRows = sort(actualRows, comparator, ann.sortBufferRows(), runs);
+            }
+            compare(expected.getTableMetaData().getTableName(), comparator, expectedRows.iterator(), actualRows);
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        } finally {
+            stmt.close();
+            for (Run run : runs) {
+                run.close();
+            }
+        }
+    }
+
+    private static List<Object[]> rows(ITable table, Column[] columns) throws DataSetException {
+        int rowCount = table.getRowCount();
+        List<Object[]> result = new ArrayList<Object[]>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            Object[] values = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = columns[i].getDataType().typeCast(table.getValue(row, columns[i].getColumnName()));
+            }
+            result.add(values);
+        }
+        return result;
+    }
+
+    private static Iterator<Object[]> sort(Iterator<Object[]> rows, Comparator<Object[]> comparator,
+        int bufferRows, List<Run> runs) throws IOException {
+
+        List<Object[]> buffer = new ArrayList<Object[]>();
+        while (rows.hasNext()) {
+            buffer.add(rows.next());
+            if (buffer.size() == bufferRows) {
+                runs.add(spill(buffer, comparator));
+                buffer.clear();
+            }
+        }
+        Collections.sort(buffer, comparator);
+        if (runs.isEmpty()) {
+            return buffer.iterator();
+        }
+        if (!buffer.isEmpty()) {
+            runs.add(spill(buffer, comparator));
+        }
+        return new MergeIterator(runs, comparator);
+    }
+
+    private static Run spill(List<Object[]> rows, Comparator<Object[]> comparator) throws IOException {
+        Collections.sort(rows, comparator);
+        File file = File.createTempFile("dbunit", ".run");
+        Run result = new Run(file, rows.size());
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                for (Object[] row : rows) {
+                    out.writeObject(row);
+                    // do not keep written rows referenced
+                    out.reset();
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            result.close();
+            throw e;
+        }
+        return result;
+    }
+
+    private static void compare(String tableName, Comparator<Object[]> comparator,
+        Iterator<Object[]> expected, Iterator<Object[]> actual) {
+
+        int row = 0;
+        while (expected.hasNext() && actual.hasNext()) {
+            Object[] expectedRow = expected.next();
+            Object[] actualRow = actual.next();
+            if (comparator.compare(expectedRow, actualRow) != 0) {
+                Assert.fail("row (table=" + tableName + ", sorted row=" + row + ") expected:<"
+                    + Arrays.toString(expectedRow) + "> but was:<" + Arrays.toString(actualRow) + ">");
+            }
+            row++;
+        }
+        if (expected.hasNext() || actual.hasNext()) {
+            Assert.fail("row count (table=" + tableName + ") expected:<" + (row + count(expected))
+                + "> but was:<" + (row + count(actual)) + ">");
+        }
+    }
+
+    private static int count(Iterator<Object[]> rows) {
+        int result = 0;
+        for (; rows.hasNext(); rows.next()) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Compare rows by all columns.
+     */
+    private static class RowComparator implements Comparator<Object[]> {
+
+        private final ValueComparator[] comparators;
+
+        public RowComparator(Column[] columns) {
+            comparators = new ValueComparator[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                comparators[i] = ValueComparator.forColumn(columns[i], false);
+            }
+        }
+
+        public int compare(Object[] o1, Object[] o2) {
+            for (int i = 0; i < comparators.length; i++) {
+                int result = comparators[i].compare(o1[i], o2[i]);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Typed rows of a result set.
+     */
+    private static class ResultSetIterator implements Iterator<Object[]> {
+
+        private final ResultSet resultSet;
+
+        private final Column[] columns;
+
+        private final boolean rtrim;
+
+        private Object[] next;
+
+        public ResultSetIterator(ResultSet resultSet, Column[] columns, boolean rtrim) {
+            this.resultSet = resultSet;
+            this.columns = columns;
+            this.rtrim = rtrim;
+        }
+
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    if (resultSet.next()) {
+                        next = new Object[columns.length];
+                        for (int i = 0; i < columns.length; i++) {
+                            Object value = columns[i].getDataType().getSqlValue(i + 1, resultSet);
+                            next[i] = rtrim && value instanceof String
+                                ? RTRIM.matcher((String) value).replaceAll("") : value;
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                } catch (TypeCastException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return next != null;
+        }
+
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object[] result = next;
+            next = null;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Sorted rows spilled to a temporary file.
+     */
+    private static class Run {
+
+        private final File file;
+
+        private int remaining;
+
+        private ObjectInputStream in;
+
+        private Object[] head;
+
+        public Run(File file, int rowCount) {
+            this.file = file;
+            this.remaining = rowCount;
+        }
+
+        public boolean advance() throws IOException {
+            if (remaining == 0) {
+                head = null;
+                // the merge does not read exhausted runs again
+                close();
+                return false;
+            }
+            if (in == null) {
+                in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            }
+            try {
+                head = (Object[]) in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            remaining--;
+            return true;
+        }
+
+        /**
+         * Close and delete the file, the assertion closes all runs whether it fails or not.
+         */
+        public void close() {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } catch (IOException ignore) {
+                // NOP
+            }
+            file.delete();
+        }
+    }
+
+    /**
+     * K-way merge of sorted runs.
+     */
+    private static class MergeIterator implements Iterator<Object[]> {
+
+        private final PriorityQueue<Run> queue;
+
+        public MergeIterator(List<Run> runs, final Comparator<Object[]> comparator) throws IOException {
+            queue = new PriorityQueue<Run>(runs.size(), new Comparator<Run>() {
+                public int compare(Run o1, Run o2) {
+                    return comparator.compare(o1.head, o2.head);
+                }
+            });
+            for (Run run : runs) {
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        public Object[] next() {
+            Run run = queue.poll();
+            if (run == null) {
+                throw new NoSuchElementException();
+            }
+            Object[] result = run.head;
+            try {
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.junit.runners.model.FrameworkMethod;
+
+/**
+ * Test method order that keeps methods with the same setup together.
+ * Methods without {@link DbUnitTest} come first. Others are grouped by
+ * init dataset, operation and pre-setup SQL, and within a group methods
+ * without expected dataset run before the mutating ones.
+ * Ties are broken by method name, so the order is deterministic.
+ * @author kiy0taka
+ */
+public class FixtureAffinityComparator implements Comparator<FrameworkMethod> {
+
+    /**
+     * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+     */
+    public int compare(FrameworkMethod m1, FrameworkMethod m2) {
+        DbUnitTest a1 = m1.getAnnotation(DbUnitTest.class);
+        DbUnitTest a2 = m2.getAnnotation(DbUnitTest.class);
+        if (a1 == null || a2 == null) {
+            if (a1 != a2) {
+                return a1 == null ? -1 : 1;
+            }
+        } else {
+            int result = signature(a1).compareTo(signature(a2));
+            if (result != 0) {
+                return result;
+            }
+            result = Boolean.valueOf(!a1.expected().isEmpty()).compareTo(!a2.expected().isEmpty());
+            if (result != 0) {
+                return result;
+            }
+        }
+        int result = m1.getName().compareTo(m2.getName());
+        return result != 0 ? result
+            : m1.getMethod().getDeclaringClass().getName().compareTo(m2.getMethod().getDeclaringClass().getName());
+    }
+
+    /**
+     * Setup signature of the test method.
+     * @param ann annotation
+     * @return signature
+     */
+    protected String signature(DbUnitTest ann) {
+        return new StringBuilder()
+            .append(ann.init()).append('\u0000')
+            .append(ann.operation()).append('\u0000')
+            .append(ann.nullValue()).append('\u0000')
+            .append(ann.sqlScript()).append('\u0000')
+            .append(Arrays.toString(ann.sql()))
+            .toString();
+    }
+}
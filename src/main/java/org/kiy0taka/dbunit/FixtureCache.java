@@ -0,0 +1,431 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.dbunit.dataset.AbstractTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+
+/**
+ * Parsed datasets shared by JVMs through cache files.
+ * A cache file is named by the hash of the fixture content and its type. It is created once under
+ * a file lock and renamed into place, then mapped read-only by every JVM, so values are read
+ * from the shared pages instead of a parsed copy in each heap.
+ * Datasets with values other than String, BigDecimal, Long and Boolean are not cached.
+ * @author kiy0taka
+ */
+public class FixtureCache {
+
+    private static final int MAGIC = 0x44425543;
+
+    private static final int VERSION = 1;
+
+    private static final String SUFFIX = ".dataset";
+
+    private static final byte STRING = 0;
+
+    private static final byte DECIMAL = 1;
+
+    private static final byte LONG = 2;
+
+    private static final byte BOOLEAN = 3;
+
+    private static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<String, Entry>();
+
+    private static final ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<String, Object>();
+
+    private File dir;
+
+    /**
+     * Create cache.
+     * @param dir cache directory, created if not exists
+     */
+    public FixtureCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Cached dataset of the fixture file.
+     * @param path fixture path
+     * @param url fixture file
+     * @param type fixture type
+     * @param loader parser of the fixture, called if not cached yet
+     * @return mapped dataset, or the parsed dataset if not cacheable
+     */
+    public IDataSet get(String path, URL url, DataSetType type, DataSetPrefetcher.Loader loader) {
+        String entryKey = dir.getAbsolutePath() + '|' + url + '|' + type;
+        long stamp = FlatXmlIndex.stamp(url);
+        Entry entry = ENTRIES.get(entryKey);
+        if (entry != null && entry.stamp == stamp) {
+            return entry.dataSet == null ? loader.load(path) : entry.dataSet;
+        }
+        try {
+            File file = new File(dir, hash(url, type) + SUFFIX);
+            IDataSet loaded = null;
+            if (!file.exists()) {
+                loaded = create(file, path, loader);
+            }
+            IDataSet dataSet = file.exists() ? map(file) : null;
+            ENTRIES.put(entryKey, new Entry(stamp, dataSet));
+            if (dataSet != null) {
+                return dataSet;
+            }
+            return loaded == null ? loader.load(path) : loaded;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (DataSetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Create the cache file, unless another thread or JVM has created it.
+     * @return parsed dataset, or null if created by another
+     */
+    private IDataSet create(File file, String path, DataSetPrefetcher.Loader loader)
+        throws IOException, DataSetException {
+
+        Object lock = new Object();
+        Object current = LOCKS.putIfAbsent(file.getPath(), lock);
+        synchronized (current == null ? lock : current) {
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("Cannot create directory " + dir);
+            }
+            RandomAccessFile lockFile = new RandomAccessFile(new File(dir, file.getName() + ".lock"), "rw");
+            try {
+                FileLock fileLock = lockFile.getChannel().lock();
+                try {
+                    if (file.exists()) {
+                        return null;
+                    }
+                    IDataSet result = loader.load(path);
+                    write(result, file);
+                    return result;
+                } finally {
+                    fileLock.release();
+                }
+            } finally {
+                lockFile.close();
+            }
+        }
+    }
+
+    /**
+     * Write the dataset to a temporary file and rename it to the cache file.
+     * Nothing is written if the dataset has values not cacheable.
+     */
+    static void write(IDataSet dataSet, File file) throws IOException, DataSetException {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            int tableCount = -1;
+            try {
+                tableCount = write(dataSet, out);
+            } finally {
+                out.close();
+            }
+            if (tableCount < 0) {
+                return;
+            }
+            RandomAccessFile header = new RandomAccessFile(temp, "rw");
+            try {
+                // the table count is known after iterating the tables
+                header.seek(8);
+                header.writeInt(tableCount);
+            } finally {
+                header.close();
+            }
+            if (!temp.renameTo(file) && !file.exists()) {
+                throw new IOException("Cannot rename " + temp + " to " + file);
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Layout is the table count, then each table of name, column names, row count, value area length,
+     * value offsets of rows by columns (-1 for null), and values of tag and bytes.
+     * Same values of a table share the offset.
+     * @return number of tables, or -1 if not cacheable
+     */
+    private static int write(IDataSet dataSet, DataOutputStream out) throws IOException, DataSetException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        // patched by the caller
+        out.writeInt(0);
+        int tableCount = 0;
+        for (ITableIterator it = dataSet.iterator(); it.next(); tableCount++) {
+            ITable table = it.getTable();
+            ITableMetaData metaData = table.getTableMetaData();
+            Column[] columns = metaData.getColumns();
+            int rowCount = table.getRowCount();
+            int[] offsets = new int[rowCount * columns.length];
+            ByteArrayOutputStream values = new ByteArrayOutputStream();
+            DataOutputStream valueOut = new DataOutputStream(values);
+            Map<Object, Integer> written = new HashMap<Object, Integer>();
+            for (int row = 0; row < rowCount; row++) {
+                for (int i = 0; i < columns.length; i++) {
+                    Object value = table.getValue(row, columns[i].getColumnName());
+                    if (value == null) {
+                        offsets[row * columns.length + i] = -1;
+                        continue;
+                    }
+                    Integer offset = written.get(value);
+                    if (offset == null) {
+                        offset = valueOut.size();
+                        if (!writeValue(value, valueOut) || valueOut.size() == Integer.MAX_VALUE) {
+                            return -1;
+                        }
+                        written.put(value, offset);
+                    }
+                    offsets[row * columns.length + i] = offset;
+                }
+            }
+            writeString(metaData.getTableName(), out);
+            out.writeInt(columns.length);
+            for (Column column : columns) {
+                if (column.getDataType() != DataType.UNKNOWN) {
+                    return -1;
+                }
+                writeString(column.getColumnName(), out);
+            }
+            out.writeInt(rowCount);
+            out.writeInt(values.size());
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            values.writeTo(out);
+        }
+        return tableCount;
+    }
+
+    private static boolean writeValue(Object value, DataOutputStream out) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) value, out);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(DECIMAL);
+            writeString(value.toString(), out);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Map the cache file.
+     * @param file cache file
+     * @return dataset reading the mapped file, or null if not a cache file of this version
+     * @throws IOException I/O error
+     * @throws DataSetException DbUnit error
+     */
+    static IDataSet map(File file) throws IOException, DataSetException {
+        MappedByteBuffer buffer;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+        } finally {
+            in.close();
+        }
+        if (buffer.capacity() < 12 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return null;
+        }
+        ITable[] tables = new ITable[buffer.getInt(8)];
+        int position = 12;
+        for (int t = 0; t < tables.length; t++) {
+            String tableName = readString(buffer, position);
+            position += 4 + buffer.getInt(position);
+            Column[] columns = new Column[buffer.getInt(position)];
+            position += 4;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new Column(readString(buffer, position), DataType.UNKNOWN);
+                position += 4 + buffer.getInt(position);
+            }
+            int rowCount = buffer.getInt(position);
+            int valuesLength = buffer.getInt(position + 4);
+            position += 8;
+            tables[t] = new MappedTable(new DefaultTableMetaData(tableName, columns), rowCount, buffer, position);
+            position += rowCount * columns.length * 4 + valuesLength;
+        }
+        return new DefaultDataSet(tables);
+    }
+
+    private static String readString(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        ByteBuffer source = buffer.duplicate();
+        source.position(position + 4);
+        source.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hash(URL url, DataSetType type) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((VERSION + "|" + type + "|").getBytes("UTF-8"));
+        InputStream in = url.openStream();
+        try {
+            byte[] buf = new byte[8192];
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                digest.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest()) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Dataset of a fixture in this JVM.
+     */
+    private static class Entry {
+
+        private long stamp;
+
+        private IDataSet dataSet;
+
+        public Entry(long stamp, IDataSet dataSet) {
+            this.stamp = stamp;
+            this.dataSet = dataSet;
+        }
+    }
+
+    /**
+     * Table reading values from the mapped file.
+     */
+    private static class MappedTable extends AbstractTable {
+
+        private ITableMetaData metaData;
+
+        private int rowCount;
+
+        private int columnCount;
+
+        private ByteBuffer buffer;
+
+        private int offsets;
+
+        private int values;
+
+        public MappedTable(ITableMetaData metaData, int rowCount, ByteBuffer buffer, int offsets)
+            throws DataSetException {
+
+            this.metaData = metaData;
+            this.rowCount = rowCount;
+            this.buffer = buffer;
+            this.offsets = offsets;
+            columnCount = metaData.getColumns().length;
+            values = offsets + rowCount * columnCount * 4;
+        }
+
+        /**
+         * @see org.dbunit.dataset.ITable#getTableMetaData()
+         */
+        public ITableMetaData getTableMetaData() {
+            return metaData;
+        }
+
+        /**
+         * @see org.dbunit.dataset.ITable#getRowCount()
+         */
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @see org.dbunit.dataset.ITable#getValue(int, java.lang.String)
+         */
+        public Object getValue(int row, String column) throws DataSetException {
+            assertValidRowIndex(row);
+            int offset = buffer.getInt(offsets + (row * columnCount + getColumnIndex(column)) * 4);
+            if (offset < 0) {
+                return null;
+            }
+            int position = values + offset;
+            switch (buffer.get(position)) {
+            case STRING:
+                return readString(buffer, position + 1);
+            case DECIMAL:
+                return new BigDecimal(readString(buffer, position + 1));
+            case LONG:
+                return buffer.getLong(position + 1);
+            case BOOLEAN:
+                return buffer.get(position + 1) != 0;
+            default:
+                throw new DataSetException("Invalid value at " + position);
+            }
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        public String toString() {
+            return getClass().getSimpleName() + "[" + metaData.getTableName() + ", rows=" + rowCount + "]";
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.dbunit.dataset.DataSetException;
+
+/**
+ * Byte offsets of the table elements in a flat XML file.
+ * Indexes are built by scanning the markup without parsing rows, and cached by URL.
+ * Files with a DOCTYPE or in a multi-byte encoding such as UTF-16 are not indexable.
+ * @author kiy0taka
+ */
+public final class FlatXmlIndex {
+
+    private static final ConcurrentMap<String, FlatXmlIndex> CACHE = new ConcurrentHashMap<String, FlatXmlIndex>();
+
+    private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    private final long stamp;
+
+    private final boolean indexable;
+
+    private final long headLength;
+
+    private final byte[] tail;
+
+    private final List<String> tableNames;
+
+    private final Map<String, List<long[]>> segments;
+
+    private FlatXmlIndex(long stamp, boolean indexable, long headLength, byte[] tail, List<String> tableNames,
+        Map<String, List<long[]>> segments) {
+
+        this.stamp = stamp;
+        this.indexable = indexable;
+        this.headLength = headLength;
+        this.tail = tail;
+        this.tableNames = Collections.unmodifiableList(tableNames);
+        this.segments = Collections.unmodifiableMap(segments);
+    }
+
+    /**
+     * Get cached index, building it on first use or if the file was modified.
+     * @param url flat XML file
+     * @return index
+     * @throws IOException I/O error
+     * @throws DataSetException malformed markup
+     */
+    public static FlatXmlIndex forUrl(URL url) throws IOException, DataSetException {
+        String key = url.toExternalForm();
+        long stamp = stamp(url);
+        FlatXmlIndex result = CACHE.get(key);
+        if (result == null || result.stamp != stamp) {
+            InputStream in = new BufferedInputStream(DataSetType.openStream(url));
+            try {
+                result = new Scanner(in, stamp).scan();
+            } finally {
+                in.close();
+            }
+            CACHE.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Whether table segments can be parsed separately.
+     * @return false if the file has a DOCTYPE or a multi-byte encoding
+     */
+    public boolean isIndexable() {
+        return indexable;
+    }
+
+    /**
+     * Length of the head, from the beginning of the file to the end of the root start tag.
+     * @return number of bytes
+     */
+    public long getHeadLength() {
+        return headLength;
+    }
+
+    /**
+     * End tag of the root element in the file encoding.
+     * @return bytes
+     */
+    public byte[] getTail() {
+        return tail.clone();
+    }
+
+    /**
+     * Table names in order of first appearance.
+     * @return table names
+     */
+    public List<String> getTableNames() {
+        return tableNames;
+    }
+
+    /**
+     * Byte ranges of the table elements, in file order.
+     * Consecutive rows of the same table are merged into one range.
+     * @param tableName table name, case insensitive
+     * @return ranges of <code>{start, end}</code>, or null if no such table
+     */
+    public List<long[]> getSegments(String tableName) {
+        return segments.get(tableName.toUpperCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Modification stamp of the file, 0 if not a file URL.
+     * @param url file
+     * @return stamp
+     */
+    static long stamp(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return 0;
+        }
+        try {
+            File file = new File(url.toURI());
+            return file.lastModified() ^ (file.length() << 32);
+        } catch (URISyntaxException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Markup scanner tracking byte position.
+     */
+    private static class Scanner {
+
+        private InputStream in;
+
+        private long stamp;
+
+        private long position;
+
+        private int last;
+
+        private String encoding = "UTF-8";
+
+        private List<String> tableNames = new ArrayList<String>();
+
+        private Map<String, List<long[]>> segments = new HashMap<String, List<long[]>>();
+
+        Scanner(InputStream in, long stamp) {
+            this.in = in;
+            this.stamp = stamp;
+        }
+
+        FlatXmlIndex scan() throws IOException, DataSetException {
+            in.mark(2);
+            int b1 = in.read();
+            int b2 = in.read();
+            in.reset();
+            if (b1 == 0 || b2 == 0 || b1 == 0xFE || b1 == 0xFF) {
+                return notIndexable();
+            }
+            String rootName = null;
+            while (rootName == null) {
+                if (read() != '<') {
+                    continue;
+                }
+                int c = read();
+                if (c == '?') {
+                    Matcher m = ENCODING.matcher(skipUntil("?>"));
+                    if (m.find()) {
+                        encoding = m.group(1);
+                    }
+                } else if (c == '!') {
+                    if (read() != '-') {
+                        // DOCTYPE gives the table metadata, parse the whole file
+                        return notIndexable();
+                    }
+                    skipUntil("-->");
+                } else {
+                    rootName = readName(c);
+                    if (last == '/' || last != '>' && skipTag()) {
+                        return index(position, rootName);
+                    }
+                }
+            }
+            long headLength = position;
+            String runName = null;
+            long[] run = null;
+            while (true) {
+                if (read() != '<') {
+                    continue;
+                }
+                long start = position - 1;
+                int c = read();
+                if (c == '?') {
+                    skipUntil("?>");
+                } else if (c == '!') {
+                    skipUntil(read() == '[' ? "]]>" : "-->");
+                } else if (c == '/') {
+                    String name = readName(read());
+                    if (!name.equals(rootName)) {
+                        throw new DataSetException("End tag </" + name + "> does not match <" + rootName + ">");
+                    }
+                    return index(headLength, rootName);
+                } else {
+                    String name = readName(c);
+                    if (last == '/') {
+                        skipTag();
+                    } else if (last == '>' || !skipTag()) {
+                        skipUntil("</" + name);
+                        skipTag();
+                    }
+                    if (name.equals(runName)) {
+                        run[1] = position;
+                    } else {
+                        runName = name;
+                        run = new long[] {start, position};
+                        addSegment(name, run);
+                    }
+                }
+            }
+        }
+
+        private void addSegment(String name, long[] run) {
+            String key = name.toUpperCase(Locale.ENGLISH);
+            List<long[]> list = segments.get(key);
+            if (list == null) {
+                list = new ArrayList<long[]>();
+                segments.put(key, list);
+                tableNames.add(name);
+            }
+            list.add(run);
+        }
+
+        private FlatXmlIndex index(long headLength, String rootName) throws DataSetException {
+            try {
+                byte[] tail = ("</" + rootName + ">").getBytes(encoding);
+                return new FlatXmlIndex(stamp, true, headLength, tail, tableNames, segments);
+            } catch (UnsupportedEncodingException e) {
+                throw new DataSetException(e);
+            }
+        }
+
+        private FlatXmlIndex notIndexable() {
+            return new FlatXmlIndex(stamp, false, 0, new byte[0], new ArrayList<String>(),
+                new HashMap<String, List<long[]>>());
+        }
+
+        private int read() throws IOException, DataSetException {
+            int result = in.read();
+            if (result < 0) {
+                throw new DataSetException("Unexpected end of file at " + position);
+            }
+            position++;
+            return result;
+        }
+
+        private String readName(int first) throws IOException, DataSetException {
+            ByteArrayOutputStream name = new ByteArrayOutputStream();
+            int b = first;
+            while (b != '>' && b != '/' && !Character.isWhitespace(b)) {
+                name.write(b);
+                b = read();
+            }
+            last = b;
+            try {
+                return name.toString(encoding);
+            } catch (UnsupportedEncodingException e) {
+                throw new DataSetException(e);
+            }
+        }
+
+        /**
+         * Skip to the end of the tag, ignoring quoted attribute values.
+         * @return true if the element is empty
+         */
+        private boolean skipTag() throws IOException, DataSetException {
+            int quote = 0;
+            int prev = last;
+            while (true) {
+                int b = read();
+                if (quote != 0) {
+                    if (b == quote) {
+                        quote = 0;
+                    }
+                } else if (b == '"' || b == '\'') {
+                    quote = b;
+                } else if (b == '>') {
+                    last = b;
+                    return prev == '/';
+                }
+                prev = b;
+            }
+        }
+
+        private String skipUntil(String end) throws IOException, DataSetException {
+            StringBuilder result = new StringBuilder();
+            int matched = 0;
+            while (matched < end.length()) {
+                int b = read();
+                result.append((char) b);
+                if (b == end.charAt(matched)) {
+                    matched++;
+                } else {
+                    matched = b == end.charAt(0) ? 1 : 0;
+                }
+            }
+            return result.toString();
+        }
+    }
+}
@@ -0,0 +1,608 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.xml.sax.InputSource;
+
+/**
+ * Flat XML producer reading the file by a hand-rolled pull parser.
+ * Produces the same events as {@link FlatXmlProducer} without DTD metadata and column sensing.
+ * Attribute names are matched against the table columns in place, and only values become strings.
+ * Files with a DOCTYPE are passed to {@link FlatXmlProducer}.
+ * @author kiy0taka
+ */
+public class FlatXmlPullProducer implements IDataSetProducer {
+
+    private static final String DATASET = "dataset";
+
+    private static final Pattern ENCODING = Pattern.compile("^<\\?xml[^>]*?encoding\\s*=\\s*[\"']([\\w.:-]+)[\"']");
+
+    private URL url;
+
+    private InputStream in;
+
+    private IDataSetConsumer consumer = new DefaultConsumer();
+
+    private Reader reader;
+
+    private char[] buf = new char[8192];
+
+    private int pos;
+
+    private int limit;
+
+    private int line = 1;
+
+    private char[] name = new char[64];
+
+    private int nameLength;
+
+    private char[] element = new char[64];
+
+    private StringBuilder value = new StringBuilder();
+
+    private boolean emptyElement;
+
+    private Map<String, Table> tables = new HashMap<String, Table>();
+
+    private Table activeTable;
+
+    /**
+     * Create producer.
+     * @param url flat XML file
+     */
+    public FlatXmlPullProducer(URL url) {
+        this.url = url;
+    }
+
+    /**
+     * Create producer of the stream without DOCTYPE.
+     * The stream is not closed.
+     * @param in flat XML stream
+     */
+    public FlatXmlPullProducer(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @see org.dbunit.dataset.stream.IDataSetProducer#setConsumer(org.dbunit.dataset.stream.IDataSetConsumer)
+     */
+    public void setConsumer(IDataSetConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * @see org.dbunit.dataset.stream.IDataSetProducer#produce()
+     */
+    public void produce() throws DataSetException {
+        try {
+            InputStream stream = url == null ? in : DataSetType.openStream(url);
+            boolean doctype;
+            try {
+                reader = createReader(stream);
+                doctype = !parse();
+            } finally {
+                if (url != null) {
+                    stream.close();
+                }
+            }
+            if (doctype) {
+                if (url == null) {
+                    throw new DataSetException("DOCTYPE is not supported for streams");
+                }
+                InputSource source = new InputSource(DataSetType.openStream(url));
+                source.setSystemId(url.toString());
+                FlatXmlProducer producer = new FlatXmlProducer(source);
+                producer.setConsumer(consumer);
+                producer.produce();
+            }
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    /**
+     * Parse the document.
+     * @return false if the document has a DOCTYPE, nothing is consumed then
+     * @throws IOException I/O error
+     * @throws DataSetException parse error
+     */
+    private boolean parse() throws IOException, DataSetException {
+        while (true) {
+            skipWhitespace();
+            if (next() != '<') {
+                throw error("Content is not allowed in prolog");
+            }
+            int c = peek();
+            if (c == '?') {
+                skipUntil("?>");
+            } else if (c == '!') {
+                next();
+                if (peek() == 'D') {
+                    expect("DOCTYPE");
+                    return false;
+                }
+                expect("--");
+                skipUntil("-->");
+            } else {
+                break;
+            }
+        }
+        readName();
+        if (!matches(DATASET)) {
+            throw error("Root element must be " + DATASET);
+        }
+        readAttributes(null, null, null, null);
+        consumer.startDataSet();
+        List<String> openElements = new ArrayList<String>();
+        if (!emptyElement) {
+            openElements.add(DATASET);
+        }
+        while (!openElements.isEmpty()) {
+            int c = next();
+            if (c == -1) {
+                throw error("Unexpected end of file");
+            } else if (c != '<') {
+                continue;
+            }
+            c = peek();
+            if (c == '/') {
+                next();
+                readName();
+                if (!matches(openElements.get(openElements.size() - 1))) {
+                    throw error("End tag does not match " + openElements.get(openElements.size() - 1));
+                }
+                skipWhitespace();
+                if (next() != '>') {
+                    throw error("End tag must end with '>'");
+                }
+                openElements.remove(openElements.size() - 1);
+            } else if (c == '?') {
+                skipUntil("?>");
+            } else if (c == '!') {
+                next();
+                if (peek() == '[') {
+                    expect("[CDATA[");
+                    skipUntil("]]>");
+                } else {
+                    expect("--");
+                    skipUntil("-->");
+                }
+            } else {
+                String element = startElement();
+                if (element != null) {
+                    openElements.add(element);
+                }
+            }
+        }
+        if (activeTable != null) {
+            consumer.endTable();
+        }
+        consumer.endDataSet();
+        for (int c = next(); c != -1; c = next()) {
+            if (c == '<' && peek() == '?') {
+                skipUntil("?>");
+            } else if (c == '<' && peek() == '!') {
+                next();
+                expect("--");
+                skipUntil("-->");
+            } else if (!Character.isWhitespace(c)) {
+                throw error("Content is not allowed after the root element");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a table row.
+     * @return element name, or null if the element is empty
+     */
+    private String startElement() throws IOException, DataSetException {
+        readName();
+        int elementLength = nameLength;
+        if (element.length < nameLength) {
+            element = new char[name.length];
+        }
+        System.arraycopy(name, 0, element, 0, nameLength);
+        Table table = activeTable != null && activeTable.matches(name, nameLength) ? activeTable
+            : tables.get(new String(name, 0, nameLength).toUpperCase(Locale.ENGLISH));
+        if (table == null) {
+            String tableName = new String(name, 0, nameLength);
+            List<String> columns = new ArrayList<String>();
+            List<String> values = new ArrayList<String>();
+            readAttributes(null, null, columns, values);
+            table = new Table(tableName, columns);
+            tables.put(tableName.toUpperCase(Locale.ENGLISH), table);
+            startTable(table);
+            if (!values.isEmpty()) {
+                consumer.row(values.toArray());
+            }
+        } else {
+            startTable(table);
+            Object[] row = new Object[table.columns.length];
+            if (readAttributes(table, row, null, null) > 0) {
+                consumer.row(row);
+            }
+        }
+        return emptyElement ? null : new String(element, 0, elementLength);
+    }
+
+    private void startTable(Table table) throws DataSetException {
+        if (table != activeTable) {
+            if (activeTable != null) {
+                consumer.endTable();
+            }
+            consumer.startTable(table.metaData);
+            activeTable = table;
+        }
+    }
+
+    /**
+     * Read attributes up to the end of the start tag.
+     * Values are set to the row by the column index of the table,
+     * or added with the names to the lists if table is null.
+     * @return number of attributes
+     */
+    private int readAttributes(Table table, Object[] row, List<String> names, List<String> values)
+        throws IOException, DataSetException {
+
+        int count = 0;
+        while (true) {
+            skipWhitespace();
+            int c = peek();
+            if (c == '/') {
+                next();
+                if (next() != '>') {
+                    throw error("Element must end with '/>'");
+                }
+                emptyElement = true;
+                return count;
+            } else if (c == '>') {
+                next();
+                emptyElement = false;
+                return count;
+            }
+            readName();
+            int index = -1;
+            if (table != null) {
+                index = table.indexOf(name, nameLength, count);
+            } else if (names != null) {
+                names.add(new String(name, 0, nameLength));
+            }
+            skipWhitespace();
+            if (next() != '=') {
+                throw error("Attribute name must be followed by '='");
+            }
+            skipWhitespace();
+            readValue();
+            if (index >= 0) {
+                row[index] = value.toString();
+            } else if (values != null) {
+                values.add(value.toString());
+            }
+            count++;
+        }
+    }
+
+    private void readName() throws IOException, DataSetException {
+        nameLength = 0;
+        for (int c = peek(); c > ' ' && c != '=' && c != '/' && c != '>' && c != '<' && c != '"' && c != '\'';
+            c = peek()) {
+
+            if (nameLength == name.length) {
+                name = Arrays.copyOf(name, nameLength * 2);
+            }
+            name[nameLength++] = (char) c;
+            pos++;
+        }
+        if (nameLength == 0) {
+            throw error("Name expected");
+        }
+    }
+
+    /**
+     * Read the quoted attribute value with references replaced and white spaces normalized.
+     */
+    private void readValue() throws IOException, DataSetException {
+        int quote = next();
+        if (quote != '"' && quote != '\'') {
+            throw error("Attribute value must be quoted");
+        }
+        value.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw error("Unexpected end of file");
+            }
+            int start = pos;
+            int end = start;
+            for (char ch = buf[end]; ch != quote && ch != '&' && ch != '<' && ch >= ' '; ch = buf[end]) {
+                if (++end == limit) {
+                    break;
+                }
+            }
+            value.append(buf, start, end - start);
+            pos = end;
+            if (end == limit) {
+                continue;
+            }
+            int c = next();
+            if (c == quote) {
+                return;
+            } else if (c == '&') {
+                readReference();
+            } else if (c == '<') {
+                throw error("Attribute value must not contain '<'");
+            } else if (c == '\r') {
+                if (peek() == '\n') {
+                    next();
+                }
+                value.append(' ');
+            } else if (c == '\n' || c == '\t') {
+                value.append(' ');
+            } else {
+                value.append((char) c);
+            }
+        }
+    }
+
+    private void readReference() throws IOException, DataSetException {
+        int c = next();
+        if (c == '#') {
+            int radix = 10;
+            if (peek() == 'x') {
+                next();
+                radix = 16;
+            }
+            int code = 0;
+            for (c = next(); c != ';'; c = next()) {
+                int digit = c == -1 ? -1 : Character.digit((char) c, radix);
+                if (digit < 0 || code > Character.MAX_CODE_POINT) {
+                    throw error("Invalid character reference");
+                }
+                code = code * radix + digit;
+            }
+            if (code > Character.MAX_CODE_POINT) {
+                throw error("Invalid character reference");
+            }
+            value.appendCodePoint(code);
+            return;
+        }
+        int start = value.length();
+        for (; c != ';'; c = next()) {
+            if (c == -1 || c == '<' || value.length() - start > 4) {
+                throw error("Invalid entity reference");
+            }
+            value.append((char) c);
+        }
+        String entity = value.substring(start);
+        value.setLength(start);
+        if ("lt".equals(entity)) {
+            value.append('<');
+        } else if ("gt".equals(entity)) {
+            value.append('>');
+        } else if ("amp".equals(entity)) {
+            value.append('&');
+        } else if ("quot".equals(entity)) {
+            value.append('"');
+        } else if ("apos".equals(entity)) {
+            value.append('\'');
+        } else {
+            throw error("Undeclared entity &" + entity + ";");
+        }
+    }
+
+    private boolean matches(String s) {
+        if (s.length() != nameLength) {
+            return false;
+        }
+        for (int i = 0; i < nameLength; i++) {
+            if (s.charAt(i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expect(String s) throws IOException, DataSetException {
+        for (int i = 0; i < s.length(); i++) {
+            if (next() != s.charAt(i)) {
+                throw error("'" + s + "' expected");
+            }
+        }
+    }
+
+    private void skipUntil(String terminator) throws IOException, DataSetException {
+        int matched = 0;
+        while (matched < terminator.length()) {
+            int c = next();
+            if (c == -1) {
+                throw error("'" + terminator + "' expected");
+            } else if (c == terminator.charAt(matched)) {
+                matched++;
+            } else if (matched != 2 || c != terminator.charAt(0) || c != terminator.charAt(1)) {
+                matched = c == terminator.charAt(0) ? 1 : 0;
+            }
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        for (int c = peek(); c == ' ' || c == '\n' || c == '\r' || c == '\t'; c = peek()) {
+            next();
+        }
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos];
+    }
+
+    private int next() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        char c = buf[pos++];
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = reader.read(buf, 0, buf.length);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    private DataSetException error(String message) {
+        return new DataSetException(message + " (" + (url == null ? "" : url + ", ") + "line " + line + ")");
+    }
+
+    /**
+     * Reader of the stream by its byte order mark or XML declaration. UTF-8 by default.
+     * @param stream XML stream
+     * @return reader
+     * @throws IOException I/O error
+     */
+    static Reader createReader(InputStream stream) throws IOException {
+        InputStream in = new BufferedInputStream(stream, 8192);
+        byte[] head = new byte[1024];
+        in.mark(head.length);
+        int length = 0;
+        for (int n = 0; n >= 0 && length < head.length; n = in.read(head, length, head.length - length)) {
+            length += n;
+        }
+        in.reset();
+        String charset = "UTF-8";
+        int bom = 0;
+        if (length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            bom = 3;
+        } else if (length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+            charset = "UTF-16BE";
+            bom = 2;
+        } else if (length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+            charset = "UTF-16LE";
+            bom = 2;
+        } else if (length >= 2 && head[0] == 0 && head[1] == '<') {
+            charset = "UTF-16BE";
+        } else if (length >= 2 && head[0] == '<' && head[1] == 0) {
+            charset = "UTF-16LE";
+        } else {
+            Matcher matcher = ENCODING.matcher(new String(head, 0, length, "ISO-8859-1"));
+            if (matcher.find()) {
+                charset = matcher.group(1);
+            }
+        }
+        for (int i = 0; i < bom; i++) {
+            in.read();
+        }
+        return new InputStreamReader(in, charset);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return getClass().getSimpleName() + "[" + (url == null ? in : url) + "]";
+    }
+
+    /**
+     * Table of the dataset with column names as characters.
+     */
+    private static class Table {
+
+        private char[] nameChars;
+
+        private ITableMetaData metaData;
+
+        private char[][] columns;
+
+        public Table(String name, List<String> columnNames) {
+            nameChars = name.toCharArray();
+            Column[] metaColumns = new Column[columnNames.size()];
+            columns = new char[metaColumns.length][];
+            for (int i = 0; i < metaColumns.length; i++) {
+                metaColumns[i] = new Column(columnNames.get(i), DataType.UNKNOWN);
+                columns[i] = columnNames.get(i).toCharArray();
+            }
+            metaData = new DefaultTableMetaData(name, metaColumns);
+        }
+
+        public boolean matches(char[] chars, int length) {
+            return equals(nameChars, chars, length);
+        }
+
+        /**
+         * Column index of the attribute name, trying the index of the same position first.
+         * @return column index, or -1 if not a column
+         */
+        public int indexOf(char[] chars, int length, int position) {
+            if (position < columns.length && equals(columns[position], chars, length)) {
+                return position;
+            }
+            for (int i = 0; i < columns.length; i++) {
+                if (equals(columns[i], chars, length)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean equals(char[] a, char[] b, int length) {
+            if (a.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (a[i] != b[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
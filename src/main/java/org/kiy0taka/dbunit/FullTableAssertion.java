@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.Columns;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * Compare all rows of the database table.
+ * Only the columns of the expected table are selected.
+ * @author kiy0taka
+ */
+public class FullTableAssertion implements TableAssertion {
+
+    /**
+     * @see org.kiy0taka.dbunit.TableAssertion#assertTable(IDatabaseConnection, ITableMetaData, ITable, DbUnitTest)
+     */
+    public void assertTable(IDatabaseConnection conn, ITableMetaData metaData, ITable expected, DbUnitTest ann)
+        throws SQLException, DatabaseUnitException {
+
+        String tableName = expected.getTableMetaData().getTableName();
+        String sql = createQuery(conn, metaData, expected.getTableMetaData()).toString();
+        assertEquals(expected, conn.createQueryTable(tableName, sql), metaData, ann);
+    }
+
+    /**
+     * Create query selecting the expected columns ordered by primary keys.
+     * All columns are selected if no expected column exists in the database.
+     * @param conn database connection
+     * @param metaData database table metadata
+     * @param expected expected table metadata
+     * @return query
+     * @throws DataSetException metadata error
+     */
+    protected TableQuery createQuery(IDatabaseConnection conn, ITableMetaData metaData, ITableMetaData expected)
+        throws DataSetException {
+
+        Column[] columns = columns(metaData, expected);
+        String escapePattern = (String) conn.getConfig().getProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN);
+        return new TableQuery(metaData.getTableName(), conn.getSchema(), escapePattern)
+            .columns(columns.length == 0 ? metaData.getColumns() : columns)
+            .orderBy(metaData.getPrimaryKeys());
+    }
+
+    /**
+     * Database columns that appear in the expected table.
+     * @param metaData database table metadata
+     * @param expected expected table metadata
+     * @return database columns in expected order
+     * @throws DataSetException metadata error
+     */
+    protected Column[] columns(ITableMetaData metaData, ITableMetaData expected) throws DataSetException {
+        List<Column> result = new ArrayList<Column>();
+        for (Column column : expected.getColumns()) {
+            Column databaseColumn = Columns.getColumn(column.getColumnName(), metaData.getColumns());
+            if (databaseColumn != null) {
+                result.add(databaseColumn);
+            }
+        }
+        return result.toArray(new Column[result.size()]);
+    }
+
+    /**
+     * Count rows of the table.
+     * @param conn database connection
+     * @param tableName qualified table name
+     * @return row count
+     * @throws SQLException SQL error
+     */
+    protected int count(IDatabaseConnection conn, String tableName) throws SQLException {
+        Statement stmt = conn.getConnection().createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("select count(*) from " + tableName);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Compare tables by {@link DbUnitTest#comparison()}, trimming actual values if {@link DbUnitTest#rtrim()}.
+     * Failures show the primary key values that appear in the expected table.
+     * @param expected expected table
+     * @param actual actual table
+     * @param metaData database table metadata
+     * @param ann test annotation
+     * @throws DatabaseUnitException not equals
+     */
+    protected void assertEquals(ITable expected, ITable actual, ITableMetaData metaData, DbUnitTest ann)
+        throws DatabaseUnitException {
+
+        List<Column> keys = new ArrayList<Column>();
+        for (Column key : metaData.getPrimaryKeys()) {
+            Column column = Columns.getColumn(key.getColumnName(), expected.getTableMetaData().getColumns());
+            if (column != null) {
+                keys.add(column);
+            }
+        }
+        ann.comparison().assertEquals(expected, actual, keys.toArray(new Column[keys.size()]), ann);
+    }
+}
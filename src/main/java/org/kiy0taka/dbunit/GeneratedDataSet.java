@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dbunit.dataset.AbstractTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+
+/**
+ * Dataset of generated rows, described by lines of <code>table.column=generator</code>.
+ * Rows are not kept, each value is generated when read. (i.e. by the insert operation)
+ * <pre>
+ * # 1000000 rows of emp
+ * emp.rows=1000000
+ * emp.seed=42
+ * emp.empno=sequence(1)
+ * emp.ename=format(EMP%06d)
+ * emp.job=pick(CLERK,SALESMAN,MANAGER)
+ * emp.hiredate=date(1980-01-01,1999-12-31)
+ * emp.sal=range(800.00,5000.00)
+ * emp.comm=null
+ * emp.deptno=cycle(10,20,30)
+ * </pre>
+ * <code>rows</code> is required and <code>seed</code> is 0 by default. Tables and columns are in order of lines.
+ * @see ColumnGenerator#parse(String, long)
+ * @author kiy0taka
+ */
+public class GeneratedDataSet extends DefaultDataSet {
+
+    /**
+     * Create dataset.
+     * @param reader descriptor
+     * @throws DataSetException invalid descriptor
+     * @throws IOException I/O error
+     */
+    public GeneratedDataSet(Reader reader) throws DataSetException, IOException {
+        for (ITable table : parse(new BufferedReader(reader))) {
+            addTable(table);
+        }
+    }
+
+    private static List<ITable> parse(BufferedReader reader) throws DataSetException, IOException {
+        Map<String, Map<String, String[]>> tables = new LinkedHashMap<String, Map<String, String[]>>();
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#")) {
+                continue;
+            }
+            int eq = line.indexOf('=');
+            int dot = line.indexOf('.');
+            if (eq < 0 || dot < 0 || dot > eq) {
+                throw new DataSetException("Invalid line " + lineNumber + ": " + line);
+            }
+            String tableName = line.substring(0, dot).trim();
+            Map<String, String[]> entries = tables.get(tableName);
+            if (entries == null) {
+                entries = new LinkedHashMap<String, String[]>();
+                tables.put(tableName, entries);
+            }
+            entries.put(line.substring(dot + 1, eq).trim(),
+                new String[] {line.substring(eq + 1).trim(), String.valueOf(lineNumber)});
+        }
+        List<ITable> result = new ArrayList<ITable>();
+        for (Map.Entry<String, Map<String, String[]>> table : tables.entrySet()) {
+            result.add(createTable(table.getKey(), table.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Create table of the entries.
+     * @param entries value and line number by column name
+     */
+    private static ITable createTable(String tableName, Map<String, String[]> entries) throws DataSetException {
+        String[] rows = entries.remove("rows");
+        if (rows == null) {
+            throw new DataSetException("rows of " + tableName + " is not declared");
+        }
+        String[] seed = entries.remove("seed");
+        try {
+            int rowCount = Integer.parseInt(rows[0]);
+            long tableSeed = seed == null ? 0 : Long.parseLong(seed[0]);
+            Column[] columns = new Column[entries.size()];
+            ColumnGenerator[] generators = new ColumnGenerator[columns.length];
+            int i = 0;
+            for (Map.Entry<String, String[]> entry : entries.entrySet()) {
+                columns[i] = new Column(entry.getKey(), DataType.UNKNOWN);
+                try {
+                    generators[i] = ColumnGenerator.parse(entry.getValue()[0], tableSeed ^ entry.getKey().hashCode());
+                } catch (IllegalArgumentException e) {
+                    throw new DataSetException("Invalid line " + entry.getValue()[1] + ": " + e.getMessage(), e);
+                }
+                i++;
+            }
+            return new GeneratedTable(new DefaultTableMetaData(tableName, columns), rowCount, generators);
+        } catch (NumberFormatException e) {
+            throw new DataSetException("Invalid rows or seed of " + tableName, e);
+        }
+    }
+
+    /**
+     * Table generating values by column generators.
+     */
+    private static class GeneratedTable extends AbstractTable {
+
+        private ITableMetaData metaData;
+
+        private int rowCount;
+
+        private ColumnGenerator[] generators;
+
+        public GeneratedTable(ITableMetaData metaData, int rowCount, ColumnGenerator[] generators) {
+            this.metaData = metaData;
+            this.rowCount = rowCount;
+            this.generators = generators;
+        }
+
+        /**
+         * @see org.dbunit.dataset.ITable#getTableMetaData()
+         */
+        public ITableMetaData getTableMetaData() {
+            return metaData;
+        }
+
+        /**
+         * @see org.dbunit.dataset.ITable#getRowCount()
+         */
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @see org.dbunit.dataset.ITable#getValue(int, java.lang.String)
+         */
+        public Object getValue(int row, String column) throws DataSetException {
+            assertValidRowIndex(row);
+            return generators[getColumnIndex(column)].value(row);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableIterator;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoSuchTableException;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.dbunit.dataset.xml.FlatXmlDataSet;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.xml.sax.InputSource;
+
+/**
+ * Flat XML dataset parsing only the requested tables.
+ * Table names come from the {@link FlatXmlIndex} of the file, and each table is parsed
+ * from its byte ranges on first access.
+ * Files that are not indexable are parsed at once.
+ * @author kiy0taka
+ */
+public class IndexedFlatXmlDataSet implements IDataSet {
+
+    private URL url;
+
+    private FlatXmlIndex index;
+
+    private String[] tableNames;
+
+    private Map<String, ITable> tables = new HashMap<String, ITable>();
+
+    /**
+     * Create dataset of all tables in the file.
+     * @param url flat XML file
+     * @throws DataSetException DbUnit error
+     * @throws IOException I/O error
+     */
+    public IndexedFlatXmlDataSet(URL url) throws DataSetException, IOException {
+        this(url, null);
+    }
+
+    /**
+     * Create dataset of the tables.
+     * @param url flat XML file
+     * @param tableNames table names in dataset order, or null for all tables in the file
+     * @throws DataSetException DbUnit error
+     * @throws IOException I/O error
+     */
+    public IndexedFlatXmlDataSet(URL url, String[] tableNames) throws DataSetException, IOException {
+        this.url = url;
+        index = FlatXmlIndex.forUrl(url);
+        if (!index.isIndexable()) {
+            IDataSet dataSet;
+            InputStream in = DataSetType.openStream(url);
+            try {
+                dataSet = new FlatXmlDataSet(new FlatXmlProducer(new InputSource(in)));
+            } finally {
+                in.close();
+            }
+            String[] names = tableNames == null ? dataSet.getTableNames() : tableNames;
+            for (String name : names) {
+                tables.put(key(name), dataSet.getTable(name));
+            }
+            this.tableNames = names.clone();
+            return;
+        }
+        if (tableNames == null) {
+            this.tableNames = index.getTableNames().toArray(new String[index.getTableNames().size()]);
+        } else {
+            for (String name : tableNames) {
+                if (index.getSegments(name) == null) {
+                    throw new NoSuchTableException(name);
+                }
+            }
+            this.tableNames = tableNames.clone();
+        }
+    }
+
+    /**
+     * @see org.dbunit.dataset.IDataSet#getTableNames()
+     */
+    public String[] getTableNames() {
+        return tableNames.clone();
+    }
+
+    /**
+     * @see org.dbunit.dataset.IDataSet#getTableMetaData(java.lang.String)
+     */
+    public ITableMetaData getTableMetaData(String tableName) throws DataSetException {
+        return getTable(tableName).getTableMetaData();
+    }
+
+    /**
+     * @see org.dbunit.dataset.IDataSet#getTable(java.lang.String)
+     */
+    public synchronized ITable getTable(String tableName) throws DataSetException {
+        ITable result = tables.get(key(tableName));
+        if (result != null) {
+            return result;
+        }
+        for (String name : tableNames) {
+            if (name.equalsIgnoreCase(tableName)) {
+                load(Collections.singletonList(name));
+                return tables.get(key(name));
+            }
+        }
+        throw new NoSuchTableException(tableName);
+    }
+
+    /**
+     * @see org.dbunit.dataset.IDataSet#getTables()
+     */
+    @Deprecated
+    public ITable[] getTables() throws DataSetException {
+        return loadTables();
+    }
+
+    /**
+     * @see org.dbunit.dataset.IDataSet#iterator()
+     */
+    public ITableIterator iterator() throws DataSetException {
+        return new DefaultTableIterator(loadTables());
+    }
+
+    /**
+     * @see org.dbunit.dataset.IDataSet#reverseIterator()
+     */
+    public ITableIterator reverseIterator() throws DataSetException {
+        return new DefaultTableIterator(loadTables(), true);
+    }
+
+    private synchronized ITable[] loadTables() throws DataSetException {
+        List<String> missing = new ArrayList<String>();
+        for (String name : tableNames) {
+            if (!tables.containsKey(key(name))) {
+                missing.add(name);
+            }
+        }
+        if (!missing.isEmpty()) {
+            load(missing);
+        }
+        ITable[] result = new ITable[tableNames.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = tables.get(key(tableNames[i]));
+        }
+        return result;
+    }
+
+    /**
+     * @see org.dbunit.dataset.IDataSet#isCaseSensitiveTableNames()
+     */
+    public boolean isCaseSensitiveTableNames() {
+        return false;
+    }
+
+    /**
+     * Parse the tables from their byte ranges in one pass.
+     * @param names table names
+     * @throws DataSetException DbUnit error
+     */
+    protected void load(List<String> names) throws DataSetException {
+        List<long[]> segments = new ArrayList<long[]>();
+        for (String name : names) {
+            segments.addAll(index.getSegments(name));
+        }
+        Collections.sort(segments, new Comparator<long[]>() {
+            public int compare(long[] o1, long[] o2) {
+                return o1[0] < o2[0] ? -1 : o1[0] == o2[0] ? 0 : 1;
+            }
+        });
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = DataSetType.openStream(url);
+            try {
+                long position = copy(in, out, 0, 0, index.getHeadLength());
+                for (long[] segment : segments) {
+                    position = copy(in, out, position, segment[0], segment[1]);
+                }
+            } finally {
+                in.close();
+            }
+            out.write(index.getTail());
+            IDataSet dataSet = new CachedDataSet(createProducer(new ByteArrayInputStream(out.toByteArray())));
+            for (String name : names) {
+                tables.put(key(name), dataSet.getTable(name));
+            }
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        }
+    }
+
+    /**
+     * Producer of the extracted tables, without DOCTYPE.
+     * @param in flat XML stream
+     * @return producer
+     */
+    protected IDataSetProducer createProducer(InputStream in) {
+        return new FlatXmlProducer(new InputSource(in));
+    }
+
+    private static long copy(InputStream in, ByteArrayOutputStream out, long position, long start, long end)
+        throws IOException {
+
+        long skip = start - position;
+        while (skip > 0) {
+            long skipped = in.skip(skip);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of file at " + (start - skip));
+            }
+            skip -= skipped;
+        }
+        byte[] buf = new byte[8192];
+        long remaining = end - start;
+        while (remaining > 0) {
+            int n = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+            if (n < 0) {
+                throw new IOException("Unexpected end of file at " + (end - remaining));
+            }
+            out.write(buf, 0, n);
+            remaining -= n;
+        }
+        return end;
+    }
+
+    private static String key(String tableName) {
+        return tableName.toUpperCase(Locale.ENGLISH);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return getClass().getSimpleName() + "[url=" + url + ", tables=" + Arrays.toString(tableNames) + "]";
+    }
+}
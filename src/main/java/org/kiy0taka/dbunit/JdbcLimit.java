@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Upper bounds of JDBC usage of a test method through {@link TestConnection} and {@link TestDataSource}.
+ * Database setup and assertion by the runner are not counted.
+ * Negative values are unlimited.
+ * <pre>
+ * &#64;DbUnitTest(init="emp.xml")
+ * &#64;JdbcLimit(statements=1)
+ * public void findAllWithDept() {
+ * </pre>
+ * @see JdbcStats
+ * @author kiy0taka
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface JdbcLimit {
+
+    /**
+     * Maximum executed statements.
+     */
+    long statements() default -1;
+
+    /**
+     * Maximum round trips to the database.
+     */
+    long roundTrips() default -1;
+
+    /**
+     * Maximum fetched rows.
+     */
+    long rows() default -1;
+}
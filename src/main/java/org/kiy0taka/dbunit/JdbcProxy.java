@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+/**
+ * Dynamic proxy of JDBC objects counting their usage to {@link JdbcStats}.
+ * Connections, statements and result sets obtained through the proxy are proxied too.
+ * @author kiy0taka
+ */
+public class JdbcProxy implements InvocationHandler {
+
+    private Object target;
+
+    private JdbcStats stats;
+
+    private Object parent;
+
+    private int batchSize;
+
+    private JdbcProxy(Object target, JdbcStats stats, Object parent) {
+        this.target = target;
+        this.stats = stats;
+        this.parent = parent;
+    }
+
+    /**
+     * Proxy of the data source.
+     * @param dataSource data source
+     * @param stats stats counted to
+     * @return proxy, or null if the data source is null
+     */
+    public static DataSource dataSource(DataSource dataSource, JdbcStats stats) {
+        return proxy(DataSource.class, dataSource, stats, null);
+    }
+
+    /**
+     * Proxy of the connection.
+     * @param connection connection
+     * @param stats stats counted to
+     * @return proxy, or null if the connection is null
+     */
+    public static Connection connection(Connection connection, JdbcStats stats) {
+        return proxy(Connection.class, connection, stats, null);
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, JdbcStats stats, Object parent) {
+        if (target == null) {
+            return null;
+        }
+        return type.cast(Proxy.newProxyInstance(JdbcProxy.class.getClassLoader(), new Class<?>[] {type},
+            new JdbcProxy(target, stats, parent)));
+    }
+
+    /**
+     * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+     */
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (method.getDeclaringClass() == Object.class) {
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return method.invoke(target, args);
+        }
+        if (parent != null && (name.equals("getConnection") || name.equals("getStatement"))) {
+            return parent;
+        }
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            stats.addNanos(System.nanoTime() - start);
+        }
+        count(name, result);
+        return wrap(proxy, method, result);
+    }
+
+    private void count(String name, Object result) {
+        if (target instanceof ResultSet) {
+            if (name.equals("next") && Boolean.TRUE.equals(result)) {
+                stats.addRow();
+            }
+        } else if (target instanceof Statement) {
+            if (name.equals("addBatch")) {
+                batchSize++;
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+            } else if (name.equals("executeBatch")) {
+                stats.addStatements(batchSize);
+                stats.addRoundTrip();
+                batchSize = 0;
+            } else if (name.startsWith("execute")) {
+                stats.addStatements(1);
+                stats.addRoundTrip();
+            }
+        } else if (target instanceof Connection) {
+            if (name.equals("commit") || name.equals("rollback")) {
+                stats.addRoundTrip();
+            }
+        }
+    }
+
+    private Object wrap(Object proxy, Method method, Object result) {
+        Class<?> type = method.getReturnType();
+        if (type == Connection.class) {
+            return proxy(Connection.class, result, stats, null);
+        } else if (Statement.class.isAssignableFrom(type)) {
+            return proxy(type, result, stats, proxy);
+        } else if (type == ResultSet.class) {
+            return proxy(ResultSet.class, result, stats, target instanceof Statement ? proxy : null);
+        }
+        return result;
+    }
+}
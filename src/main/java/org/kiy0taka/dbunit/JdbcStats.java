@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JDBC usage of a test through the injected connections, counted by {@link JdbcProxy}.
+ * Statements are executed SQL statements including each batched one,
+ * round trips are executions, batches, commits and rollbacks, and rows are fetched result set rows.
+ * Thread safe, concurrent threads of {@link LoadTest} count to the same stats.
+ * @author kiy0taka
+ */
+public class JdbcStats {
+
+    private AtomicLong statements = new AtomicLong();
+
+    private AtomicLong roundTrips = new AtomicLong();
+
+    private AtomicLong rows = new AtomicLong();
+
+    private AtomicLong nanos = new AtomicLong();
+
+    void addStatements(long count) {
+        statements.addAndGet(count);
+    }
+
+    void addRoundTrip() {
+        roundTrips.incrementAndGet();
+    }
+
+    void addRow() {
+        rows.incrementAndGet();
+    }
+
+    void addNanos(long time) {
+        nanos.addAndGet(time);
+    }
+
+    /**
+     * Executed statements.
+     * @return count
+     */
+    public long getStatements() {
+        return statements.get();
+    }
+
+    /**
+     * Round trips to the database.
+     * @return count
+     */
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    /**
+     * Fetched rows.
+     * @return count
+     */
+    public long getRows() {
+        return rows.get();
+    }
+
+    /**
+     * Time spent in JDBC calls.
+     * @return nanoseconds
+     */
+    public long getNanos() {
+        return nanos.get();
+    }
+
+    /**
+     * Assert upper bounds of the counts.
+     * @param limit upper bounds
+     * @throws AssertionError any count exceeds its bound
+     */
+    public void assertWithin(JdbcLimit limit) {
+        assertWithin("statements", getStatements(), limit.statements());
+        assertWithin("round trips", getRoundTrips(), limit.roundTrips());
+        assertWithin("rows", getRows(), limit.rows());
+    }
+
+    private void assertWithin(String name, long count, long limit) {
+        if (limit >= 0 && count > limit) {
+            throw new AssertionError("JDBC " + name + " exceeded " + limit + ": " + this);
+        }
+    }
+
+    /**
+     * Summary. (i.e. "statements=3, roundTrips=4, rows=12, time=1.234ms")
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return String.format(Locale.ENGLISH, "statements=%d, roundTrips=%d, rows=%d, time=%.3fms",
+            getStatements(), getRoundTrips(), getRows(), getNanos() / 1000000.0);
+    }
+}
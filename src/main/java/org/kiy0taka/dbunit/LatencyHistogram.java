@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.util.Locale;
+
+/**
+ * Histogram of latencies in nanoseconds with log-linear buckets.
+ * Each power of two is divided into 32 buckets, so recorded values are kept within 3% without allocation.
+ * Not thread safe, each thread records to its own histogram and they are merged by {@link #add(LatencyHistogram)}.
+ * @author kiy0taka
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private long[] counts = new long[index(Long.MAX_VALUE) + 1];
+
+    private long count;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max;
+
+    private long sum;
+
+    /**
+     * Record a latency.
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add all latencies of the other histogram.
+     * @param other histogram
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Number of recorded latencies.
+     * @return count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Minimum latency.
+     * @return nanoseconds, 0 if empty
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Maximum latency.
+     * @return nanoseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Mean latency.
+     * @return nanoseconds, 0 if empty
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Latency at the percentile, the highest value of its bucket.
+     * @param percentile 0 to 100
+     * @return nanoseconds, 0 if empty
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(count * percentile / 100), 1);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(Math.min(highestValue(i), max), min);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Latency summary. (i.e. "min=0.051ms p50=0.210ms p90=0.380ms p99=1.200ms p99.9=2.300ms max=3.100ms")
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return String.format(Locale.ENGLISH, "min=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+            millis(getMin()), millis(getPercentile(50)), millis(getPercentile(90)),
+            millis(getPercentile(99)), millis(getPercentile(99.9)), millis(getMax()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT * 2) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_COUNT * 2) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long mantissa = index % SUB_COUNT + SUB_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Invoke a {@link DbUnitTest} method from concurrent threads after the database setup,
+ * and report throughput and latency percentiles of the test method body.
+ * Each thread has its own test instance, with its own pooled connection injected into {@link TestConnection},
+ * and runs before and after methods once around its invocations.
+ * <pre>
+ * &#64;DbUnitTest(init="emp.xml")
+ * &#64;LoadTest(threads=8, duration=5000)
+ * public void findAll() {
+ * </pre>
+ * @see LatencyHistogram
+ * @author kiy0taka
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface LoadTest {
+
+    /**
+     * Number of concurrent threads.
+     */
+    int threads() default 4;
+
+    /**
+     * Invocations per thread. Ignored if {@link #duration()} is specified.
+     */
+    int iterations() default 100;
+
+    /**
+     * Milliseconds each thread keeps invoking the test method.
+     */
+    long duration() default 0;
+
+    /**
+     * Invocations per thread before measurement.
+     */
+    int warmup() default 0;
+
+    /**
+     * File the report is appended to, <code>{class}</code> and <code>{method}</code> are replaced
+     * by the simple name of the test class and the test method name.
+     */
+    String reportFile() default "target/load/{class}.{method}.txt";
+}
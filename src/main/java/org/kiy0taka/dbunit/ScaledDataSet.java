@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.dbunit.dataset.AbstractTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * Dataset replicating rows of the tables by the scale factor.
+ * Key columns of each copy are offset to stay unique and to keep references between copies:
+ * numbers are added <code>copy * 10^k</code> greater than all key values of the dataset,
+ * and other values are suffixed by <code>-copy</code>. Rows are not kept, each value is offset when read.
+ * @see ScalingTest
+ * @author kiy0taka
+ */
+public class ScaledDataSet extends DefaultDataSet {
+
+    /**
+     * Create dataset.
+     * @param dataSet base dataset
+     * @param factor scale factor
+     * @param tableNames replicated table names, or empty for all tables
+     * @param keyColumns offset columns qualified by table name (i.e. "emp.empno")
+     * @throws DataSetException DbUnit error
+     */
+    public ScaledDataSet(IDataSet dataSet, int factor, String[] tableNames, String[] keyColumns)
+        throws DataSetException {
+
+        if (factor < 1) {
+            throw new IllegalArgumentException("Invalid scale factor: " + factor);
+        }
+        Set<String> tables = upperCase(tableNames);
+        Set<String> keys = upperCase(keyColumns);
+        List<ITable> base = new ArrayList<ITable>();
+        for (ITableIterator it = dataSet.iterator(); it.next();) {
+            base.add(it.getTable());
+        }
+        int[][] keyIndexes = new int[base.size()][];
+        BigInteger max = BigInteger.ZERO;
+        for (int t = 0; t < base.size(); t++) {
+            ITableMetaData metaData = base.get(t).getTableMetaData();
+            String tableName = metaData.getTableName().toUpperCase(Locale.ENGLISH);
+            if (!tables.isEmpty() && !tables.contains(tableName)) {
+                continue;
+            }
+            Column[] columns = metaData.getColumns();
+            Set<Integer> indexes = new HashSet<Integer>();
+            for (int i = 0; i < columns.length; i++) {
+                if (keys.contains(tableName + "." + columns[i].getColumnName().toUpperCase(Locale.ENGLISH))) {
+                    indexes.add(i);
+                    max = max.max(maxKey(base.get(t), columns[i].getColumnName()));
+                }
+            }
+            keyIndexes[t] = new int[indexes.size()];
+            int i = 0;
+            for (Integer index : indexes) {
+                keyIndexes[t][i++] = index;
+            }
+        }
+        BigInteger offset = BigInteger.ONE;
+        while (offset.compareTo(max) <= 0) {
+            offset = offset.multiply(BigInteger.TEN);
+        }
+        for (int t = 0; t < base.size(); t++) {
+            addTable(keyIndexes[t] == null || factor == 1
+                ? base.get(t) : new ScaledTable(base.get(t), factor, keyIndexes[t], new BigDecimal(offset)));
+        }
+    }
+
+    /**
+     * Replicated table names of the dataset.
+     * @param dataSet dataset
+     * @param tableNames table names, or empty for all tables
+     * @return table names
+     * @throws DataSetException DbUnit error
+     */
+    public static String[] tableNames(IDataSet dataSet, String[] tableNames) throws DataSetException {
+        Set<String> tables = upperCase(tableNames);
+        Set<String> result = new HashSet<String>();
+        for (ITableIterator it = dataSet.iterator(); it.next();) {
+            String tableName = it.getTableMetaData().getTableName();
+            if (tables.isEmpty() || tables.contains(tableName.toUpperCase(Locale.ENGLISH))) {
+                result.add(tableName);
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    private static Set<String> upperCase(String[] names) {
+        Set<String> result = new HashSet<String>();
+        for (String name : names) {
+            if (!name.isEmpty()) {
+                result.add(name.trim().toUpperCase(Locale.ENGLISH));
+            }
+        }
+        return result;
+    }
+
+    private static BigInteger maxKey(ITable table, String column) throws DataSetException {
+        BigInteger result = BigInteger.ZERO;
+        for (int row = 0; row < table.getRowCount(); row++) {
+            BigDecimal value = number(table.getValue(row, column));
+            if (value != null) {
+                result = result.max(value.abs().toBigInteger());
+            }
+        }
+        return result;
+    }
+
+    private static BigDecimal number(Object value) {
+        if (value instanceof Number || value instanceof String) {
+            try {
+                return new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Table of the base table rows repeated by the scale factor.
+     */
+    private static class ScaledTable extends AbstractTable {
+
+        private ITable table;
+
+        private int factor;
+
+        private boolean[] keys;
+
+        private BigDecimal offset;
+
+        public ScaledTable(ITable table, int factor, int[] keyIndexes, BigDecimal offset) throws DataSetException {
+            this.table = table;
+            this.factor = factor;
+            this.keys = new boolean[table.getTableMetaData().getColumns().length];
+            for (int index : keyIndexes) {
+                keys[index] = true;
+            }
+            this.offset = offset;
+        }
+
+        /**
+         * @see org.dbunit.dataset.ITable#getTableMetaData()
+         */
+        public ITableMetaData getTableMetaData() {
+            return table.getTableMetaData();
+        }
+
+        /**
+         * @see org.dbunit.dataset.ITable#getRowCount()
+         */
+        public int getRowCount() {
+            return table.getRowCount() * factor;
+        }
+
+        /**
+         * @see org.dbunit.dataset.ITable#getValue(int, java.lang.String)
+         */
+        public Object getValue(int row, String column) throws DataSetException {
+            assertValidRowIndex(row);
+            int rowCount = table.getRowCount();
+            int copy = row / rowCount;
+            Object value = table.getValue(row % rowCount, column);
+            if (copy == 0 || value == null || !keys[getColumnIndex(column)]) {
+                return value;
+            }
+            BigDecimal number = number(value);
+            return number == null
+                ? value + "-" + copy : number.add(offset.multiply(BigDecimal.valueOf(copy))).toPlainString();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.util.Locale;
+
+import org.kiy0taka.dbunit.ScalingTest.Complexity;
+
+/**
+ * Measured time of the test method by scale factor.
+ * @see ScalingTest
+ * @author kiy0taka
+ */
+public class ScalingCurve {
+
+    private int[] factors;
+
+    private long[] nanos;
+
+    /**
+     * Create curve.
+     * @param factors scale factors in ascending order
+     * @param nanos measured time of each factor in nanoseconds
+     */
+    public ScalingCurve(int[] factors, long[] nanos) {
+        if (factors.length != nanos.length) {
+            throw new IllegalArgumentException("factors and times differ in length");
+        }
+        this.factors = factors.clone();
+        this.nanos = nanos.clone();
+    }
+
+    /**
+     * Assert time of each factor is within the time of the smallest factor scaled by the complexity.
+     * @param complexity upper bound of growth
+     * @param slack allowed ratio of measured time to the bound
+     * @throws AssertionError time grows faster than the complexity
+     */
+    public void assertWithin(Complexity complexity, double slack) {
+        for (int i = 1; i < factors.length; i++) {
+            double limit = limit(complexity, slack, i);
+            if (nanos[i] > limit) {
+                throw new AssertionError(String.format(Locale.ENGLISH,
+                    "time grows faster than %s at %dx (limit %s): %s",
+                    complexity, factors[i], millis(limit), this));
+            }
+        }
+    }
+
+    private double limit(Complexity complexity, double slack, int i) {
+        return nanos[0] * slack * complexity.cost(factors[i]) / complexity.cost(factors[0]);
+    }
+
+    private static String millis(double nanos) {
+        return String.format(Locale.ENGLISH, "%.3fms", nanos / 1000000);
+    }
+
+    /**
+     * Measured time of each factor. (i.e. "1x=0.120ms, 10x=1.180ms")
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < factors.length; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(factors[i]).append("x=").append(millis(nanos[i]));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Run a {@link DbUnitTest} method with the initial dataset scaled by each factor,
+ * and fail if time of the test method body grows faster than the declared complexity.
+ * Rows are replicated with key columns offset per copy, so <code>factors={1, 10}</code> inserts 10 copies
+ * of the initial dataset at the second run.
+ * Expected dataset is asserted only by the run of factor 1.
+ * <pre>
+ * &#64;DbUnitTest(init="emp.xml")
+ * &#64;ScalingTest(factors={1, 10, 100}, complexity=Complexity.LINEAR, offsetColumns="emp.mgr")
+ * public void findAll() {
+ * </pre>
+ * @author kiy0taka
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ScalingTest {
+
+    /**
+     * Scale factors of the initial dataset.
+     */
+    int[] factors() default {1, 10, 100};
+
+    /**
+     * Upper bound of the test method time growth.
+     */
+    Complexity complexity() default Complexity.LINEAR;
+
+    /**
+     * Allowed ratio of measured time to the time expected by {@link #complexity()}.
+     */
+    double slack() default 2.0;
+
+    /**
+     * Replicated table names. All tables of the initial dataset are replicated by default.
+     */
+    String[] tables() default "";
+
+    /**
+     * Columns offset as well as primary keys, i.e. foreign keys to replicated tables.
+     * (i.e. {"emp.mgr", "emp.deptno"})
+     */
+    String[] offsetColumns() default "";
+
+    /**
+     * Runs per factor. The fastest run is measured.
+     */
+    int repeat() default 3;
+
+    /**
+     * Runs of the smallest factor before measurement.
+     */
+    int warmup() default 1;
+
+    /**
+     * Growth of time by the scale factor <code>n</code>.
+     * @author kiy0taka
+     */
+    public enum Complexity {
+
+        /**
+         * O(1)
+         */
+        CONSTANT {
+
+            /**
+             * @see org.kiy0taka.dbunit.ScalingTest.Complexity#cost(double)
+             */
+            public double cost(double n) {
+                return 1;
+            }
+        },
+
+        /**
+         * O(log n)
+         */
+        LOGARITHMIC {
+
+            /**
+             * @see org.kiy0taka.dbunit.ScalingTest.Complexity#cost(double)
+             */
+            public double cost(double n) {
+                return 1 + log2(n);
+            }
+        },
+
+        /**
+         * O(n)
+         */
+        LINEAR {
+
+            /**
+             * @see org.kiy0taka.dbunit.ScalingTest.Complexity#cost(double)
+             */
+            public double cost(double n) {
+                return n;
+            }
+        },
+
+        /**
+         * O(n log n)
+         */
+        LINEARITHMIC {
+
+            /**
+             * @see org.kiy0taka.dbunit.ScalingTest.Complexity#cost(double)
+             */
+            public double cost(double n) {
+                return n * (1 + log2(n));
+            }
+        },
+
+        /**
+         * O(n^2)
+         */
+        QUADRATIC {
+
+            /**
+             * @see org.kiy0taka.dbunit.ScalingTest.Complexity#cost(double)
+             */
+            public double cost(double n) {
+                return n * n;
+            }
+        };
+
+        /**
+         * Relative cost of the scale factor.
+         * @param n scale factor
+         * @return cost
+         */
+        public abstract double cost(double n);
+
+        private static double log2(double n) {
+            return Math.log(n) / Math.log(2);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.Columns;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.util.SQLHelper;
+
+/**
+ * Reset sequences and identity columns to follow the loaded dataset.
+ * Identity columns and sequences of column defaults
+ * (i.e. <code>NEXT VALUE FOR my_seq</code> or <code>nextval('my_seq')</code>)
+ * are looked up from database metadata once per table.
+ * @author kiy0taka
+ */
+public class SequenceResetter {
+
+    private static final Pattern SEQUENCE_DEFAULT = Pattern.compile(
+        "NEXT\\s+VALUE\\s+FOR\\s+([^\\s()]+)|NEXTVAL\\s*\\(\\s*'([^']+)'", Pattern.CASE_INSENSITIVE);
+
+    private final Map<String, Map<String, String>> generatedColumns =
+        new ConcurrentHashMap<String, Map<String, String>>();
+
+    /**
+     * Reset sequences and identity columns in a single batch.
+     * New values are max column value in the dataset plus one.
+     * A sequence used by several columns follows the greatest of them.
+     * @param conn connection
+     * @param dataSet loaded dataset
+     * @param identity reset identity columns and sequences of column defaults of all dataset tables
+     * @param sequences sequence to column mappings (i.e. "my_seq=emp.empno")
+     * @throws SQLException database access error
+     * @throws DatabaseUnitException dataset access error
+     */
+    public void reset(IDatabaseConnection conn, IDataSet dataSet, boolean identity, String... sequences)
+        throws SQLException, DatabaseUnitException {
+
+        if (!identity && !hasSequence(sequences)) {
+            return;
+        }
+        Connection connection = conn.getConnection();
+        Dialect dialect = Dialect.of(connection);
+        List<String> batch = new ArrayList<String>();
+        Map<String, Long> sequenceValues = new LinkedHashMap<String, Long>();
+        if (identity) {
+            for (String tableName : dataSet.getTableNames()) {
+                ITable table = dataSet.getTable(tableName);
+                for (Map.Entry<String, String> entry : getGeneratedColumns(conn, tableName).entrySet()) {
+                    Column column = Columns.getColumn(entry.getKey(), table.getTableMetaData().getColumns());
+                    if (column == null) {
+                        continue;
+                    }
+                    long value = nextValue(table, column);
+                    if (entry.getValue() == null) {
+                        batch.add(dialect.restartIdentity(tableName, entry.getKey(), value));
+                    } else {
+                        Long previous = sequenceValues.get(entry.getValue());
+                        sequenceValues.put(entry.getValue(), previous == null ? value : Math.max(previous, value));
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, Long> entry : sequenceValues.entrySet()) {
+            batch.add(dialect.restartSequence(entry.getKey(), entry.getValue()));
+        }
+        for (String mapping : sequences) {
+            if (mapping.isEmpty()) {
+                continue;
+            }
+            int eqIndex = mapping.indexOf('=');
+            int dotIndex = mapping.lastIndexOf('.');
+            if (eqIndex <= 0 || dotIndex < eqIndex) {
+                throw new IllegalArgumentException("Invalid sequence mapping: " + mapping);
+            }
+            String tableName = mapping.substring(eqIndex + 1, dotIndex).trim();
+            ITable table = dataSet.getTable(tableName);
+            Column column = Columns.getColumnValidated(mapping.substring(dotIndex + 1).trim(),
+                table.getTableMetaData().getColumns(), tableName);
+            batch.add(dialect.restartSequence(mapping.substring(0, eqIndex).trim(), nextValue(table, column)));
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        Statement stmt = connection.createStatement();
+        try {
+            for (String sql : batch) {
+                stmt.addBatch(sql);
+            }
+            stmt.executeBatch();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Get identity columns and columns defaulting to a sequence of the table.
+     * @param conn connection
+     * @param tableName table name
+     * @return sequence names by column names, null for identity columns
+     * @throws SQLException database access error
+     */
+    protected Map<String, String> getGeneratedColumns(IDatabaseConnection conn, String tableName)
+        throws SQLException {
+
+        Map<String, String> result = generatedColumns.get(tableName);
+        if (result == null) {
+            result = new LinkedHashMap<String, String>();
+            DatabaseMetaData metaData = conn.getConnection().getMetaData();
+            String schema = conn.getSchema();
+            ResultSet rs = metaData.getColumns(null, schema, SQLHelper.correctCase(tableName, metaData), "%");
+            try {
+                while (rs.next()) {
+                    String columnName = rs.getString("COLUMN_NAME");
+                    if ("YES".equals(rs.getString("IS_AUTOINCREMENT"))) {
+                        result.put(columnName, null);
+                        continue;
+                    }
+                    String sequence = sequence(rs.getString("COLUMN_DEF"));
+                    if (sequence != null) {
+                        result.put(columnName, sequence);
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+            generatedColumns.put(tableName, result);
+        }
+        return result;
+    }
+
+    /**
+     * Sequence name of the column default.
+     * @param columnDefault column default expression, may be null
+     * @return sequence name, or null if the default is not the next value of a sequence
+     */
+    static String sequence(String columnDefault) {
+        if (columnDefault == null) {
+            return null;
+        }
+        Matcher m = SEQUENCE_DEFAULT.matcher(columnDefault);
+        if (!m.find()) {
+            return null;
+        }
+        return m.group(1) != null ? m.group(1) : m.group(2);
+    }
+
+    private static boolean hasSequence(String... sequences) {
+        for (String mapping : sequences) {
+            if (!mapping.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long nextValue(ITable table, Column column) throws DataSetException {
+        long max = 0;
+        for (int i = 0; i < table.getRowCount(); i++) {
+            Object value = table.getValue(i, column.getColumnName());
+            if (value != null) {
+                long l = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString().trim());
+                max = Math.max(max, l);
+            }
+        }
+        return max + 1;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL script splitter.
+ * Statements are separated by semicolons. Comments are skipped and
+ * semicolons in quoted strings or identifiers are kept.
+ * @author kiy0taka
+ */
+public final class SqlScript {
+
+    private SqlScript() {
+    }
+
+    /**
+     * Load statements from UTF-8 script file.
+     * @param url script file
+     * @return statements
+     * @throws IOException read failure
+     */
+    public static List<String> load(URL url) throws IOException {
+        Reader reader = new InputStreamReader(url.openStream(), "UTF-8");
+        try {
+            return parse(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Split script into statements.
+     * @param reader script
+     * @return statements
+     * @throws IOException read failure
+     */
+    public static List<String> parse(Reader reader) throws IOException {
+        List<String> result = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        int c = reader.read();
+        while (c != -1) {
+            int next = reader.read();
+            if (c == '\'' || c == '"') {
+                sb.append((char) c);
+                int quote = c;
+                c = next;
+                while (c != -1) {
+                    sb.append((char) c);
+                    if (c == quote) {
+                        break;
+                    }
+                    c = reader.read();
+                }
+                next = c == -1 ? -1 : reader.read();
+            } else if (c == '-' && next == '-') {
+                while (next != -1 && next != '\n') {
+                    next = reader.read();
+                }
+            } else if (c == '/' && next == '*') {
+                int prev = 0;
+                next = reader.read();
+                while (next != -1 && !(prev == '*' && next == '/')) {
+                    prev = next;
+                    next = reader.read();
+                }
+                next = next == -1 ? -1 : reader.read();
+                sb.append(' ');
+            } else if (c == ';') {
+                add(result, sb);
+            } else {
+                sb.append((char) c);
+            }
+            c = next;
+        }
+        add(result, sb);
+        return result;
+    }
+
+    private static void add(List<String> statements, StringBuilder sb) {
+        String sql = sb.toString().trim();
+        if (!sql.isEmpty()) {
+            statements.add(sql);
+        }
+        sb.setLength(0);
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dynamic proxy of a physical connection caching its prepared statements by SQL.
+ * Closing a statement keeps it idle for the next <code>prepareStatement</code> of the same SQL,
+ * and the least recently used idle statement is closed when more than <code>size</code> are idle.
+ * Statements in use are never limited.
+ * @author kiy0taka
+ */
+public class StatementCache implements InvocationHandler {
+
+    private Connection target;
+
+    private Map<String, PreparedStatement> idle;
+
+    private StatementCache(Connection target, final int size) {
+        this.target = target;
+        this.idle = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= size) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Proxy of the connection caching prepared statements.
+     * @param connection physical connection
+     * @param size maximum number of idle statements
+     * @return proxy
+     */
+    public static Connection connection(Connection connection, int size) {
+        return (Connection) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, new StatementCache(connection, size));
+    }
+
+    /**
+     * Number of idle statements.
+     * @param connection proxy created by {@link #connection(Connection, int)}
+     * @return number of statements
+     */
+    public static int size(Connection connection) {
+        StatementCache cache = (StatementCache) Proxy.getInvocationHandler(connection);
+        synchronized (cache) {
+            return cache.idle.size();
+        }
+    }
+
+    /**
+     * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+     */
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (method.getDeclaringClass() == Object.class) {
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return method.invoke(target, args);
+        }
+        if (name.equals("prepareStatement") && args.length == 1) {
+            return prepare(proxy, (String) args[0]);
+        }
+        if (name.equals("close")) {
+            clear();
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private PreparedStatement prepare(Object proxy, String sql) throws SQLException {
+        PreparedStatement stmt;
+        synchronized (this) {
+            stmt = idle.remove(sql);
+        }
+        if (stmt == null) {
+            stmt = target.prepareStatement(sql);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+            new Class<?>[] {PreparedStatement.class}, new CachedStatement(stmt, sql, proxy));
+    }
+
+    private void release(String sql, PreparedStatement stmt) {
+        try {
+            stmt.clearParameters();
+            stmt.clearBatch();
+            stmt.clearWarnings();
+        } catch (SQLException e) {
+            closeQuietly(stmt);
+            return;
+        }
+        PreparedStatement replaced;
+        synchronized (this) {
+            replaced = idle.put(sql, stmt);
+        }
+        if (replaced != null) {
+            // the same SQL was open twice, keep one of them
+            closeQuietly(replaced);
+        }
+    }
+
+    private void clear() {
+        List<PreparedStatement> stmts;
+        synchronized (this) {
+            stmts = new ArrayList<PreparedStatement>(idle.values());
+            idle.clear();
+        }
+        for (PreparedStatement stmt : stmts) {
+            closeQuietly(stmt);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            // the statement is dropped anyway
+        }
+    }
+
+    /**
+     * Prepared statement returned to the cache on close.
+     * @author kiy0taka
+     */
+    private class CachedStatement implements InvocationHandler {
+
+        private PreparedStatement target;
+
+        private String sql;
+
+        private Object connection;
+
+        private boolean closed;
+
+        CachedStatement(PreparedStatement target, String sql, Object connection) {
+            this.target = target;
+            this.sql = sql;
+            this.connection = connection;
+        }
+
+        /**
+         * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method,
+         *      java.lang.Object[])
+         */
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (method.getDeclaringClass() == Object.class) {
+                if (name.equals("equals")) {
+                    return proxy == args[0];
+                } else if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                return method.invoke(target, args);
+            }
+            if (name.equals("close")) {
+                if (!closed) {
+                    closed = true;
+                    release(sql, target);
+                }
+                return null;
+            } else if (name.equals("isClosed")) {
+                return closed;
+            } else if (closed) {
+                throw new SQLException("Statement is closed.");
+            } else if (name.equals("getConnection")) {
+                return connection;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.CachedResultSetTable;
+import org.dbunit.database.ForwardOnlyResultSetTable;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.ResultSetTableMetaData;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.Columns;
+import org.dbunit.dataset.CompositeTable;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.junit.Assert;
+
+/**
+ * Compare only the rows whose primary keys appear in the expected table.
+ * Rows are fetched with <code>WHERE pk IN (...)</code> queries of at most batch size keys.
+ * Tables without primary keys in the expected columns are compared by {@link FullTableAssertion}.
+ * @author kiy0taka
+ */
+public class SubsetTableAssertion extends FullTableAssertion {
+
+    /**
+     * Default number of keys per query.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final int batchSize;
+
+    /**
+     * Create assertion with {@link #DEFAULT_BATCH_SIZE}.
+     */
+    public SubsetTableAssertion() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create assertion.
+     * @param batchSize number of keys per query
+     */
+    public SubsetTableAssertion(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @see org.kiy0taka.dbunit.FullTableAssertion#assertTable(IDatabaseConnection, ITableMetaData, ITable, DbUnitTest)
+     */
+    public void assertTable(IDatabaseConnection conn, ITableMetaData metaData, ITable expected, DbUnitTest ann)
+        throws SQLException, DatabaseUnitException {
+
+        Column[] keys = metaData.getPrimaryKeys();
+        if (keys.length == 0 || !containsAll(expected.getTableMetaData(), keys)) {
+            super.assertTable(conn, metaData, expected, ann);
+            return;
+        }
+        TableQuery query = createQuery(conn, metaData, expected.getTableMetaData());
+        if (ann.assertRowCount()) {
+            Assert.assertEquals("row count (table=" + expected.getTableMetaData().getTableName() + ")",
+                expected.getRowCount(), count(conn, query.getQualifiedTableName()));
+        }
+        int rowCount = expected.getRowCount();
+        if (rowCount == 0) {
+            return;
+        }
+        ITable[] tables = new ITable[(rowCount + batchSize - 1) / batchSize];
+        for (int i = 0; i < tables.length; i++) {
+            int start = i * batchSize;
+            tables[i] = select(conn, metaData, expected, keys, start, Math.min(start + batchSize, rowCount));
+        }
+        assertEquals(expected, new CompositeTable(tables[0].getTableMetaData(), tables), metaData, ann);
+    }
+
+    /**
+     * Select rows by the primary keys of the expected rows in range.
+     * @param conn database connection
+     * @param metaData database table metadata
+     * @param expected expected table
+     * @param keys primary key columns
+     * @param start first row index
+     * @param end last row index, exclusive
+     * @return actual rows
+     * @throws SQLException SQL error
+     * @throws DataSetException DbUnit error
+     */
+    protected ITable select(IDatabaseConnection conn, ITableMetaData metaData, ITable expected,
+        Column[] keys, int start, int end) throws SQLException, DataSetException {
+
+        TableQuery query = createQuery(conn, metaData, expected.getTableMetaData());
+        query.where(keyCondition(query, keys, end - start));
+        PreparedStatement stmt = conn.getConnection().prepareStatement(query.toString());
+        try {
+            int index = 1;
+            for (int row = start; row < end; row++) {
+                for (Column key : keys) {
+                    key.getDataType().setSqlValue(expected.getValue(row, key.getColumnName()), index++, stmt);
+                }
+            }
+            ResultSet rs = stmt.executeQuery();
+            String tableName = expected.getTableMetaData().getTableName();
+            return new CachedResultSetTable(new ForwardOnlyResultSetTable(
+                new ResultSetTableMetaData(tableName, rs, conn, false), rs));
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static boolean containsAll(ITableMetaData metaData, Column[] columns) throws DataSetException {
+        for (Column column : columns) {
+            if (Columns.getColumn(column.getColumnName(), metaData.getColumns()) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String keyCondition(TableQuery query, Column[] keys, int rows) {
+        StringBuilder sb = new StringBuilder();
+        if (keys.length == 1) {
+            sb.append(query.escape(keys[0].getColumnName())).append(" in (");
+            for (int i = 0; i < rows; i++) {
+                sb.append(i == 0 ? "?" : ", ?");
+            }
+            return sb.append(')').toString();
+        }
+        sb.append('(');
+        for (int i = 0; i < rows; i++) {
+            sb.append(i == 0 ? "(" : " or (");
+            for (int j = 0; j < keys.length; j++) {
+                sb.append(j == 0 ? "" : " and ").append(query.escape(keys[j].getColumnName())).append(" = ?");
+            }
+            sb.append(')');
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.sql.SQLException;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * Assertion of an expected table against the database.
+ * @author kiy0taka
+ */
+public interface TableAssertion {
+
+    /**
+     * Assert database table.
+     * @param conn database connection
+     * @param metaData database table metadata
+     * @param expected expected table
+     * @param ann test annotation
+     * @throws SQLException SQL error
+     * @throws DatabaseUnitException DbUnit error
+     */
+    void assertTable(IDatabaseConnection conn, ITableMetaData metaData, ITable expected, DbUnitTest ann)
+        throws SQLException, DatabaseUnitException;
+}
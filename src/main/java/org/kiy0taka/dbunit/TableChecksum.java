@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.Columns;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * Order independent table checksum computed inside the database.
+ * The checksum is the row count and the sum of the first 60 bits of the digest of each row string.
+ * Checksums of expected tables are cached by key.
+ * @author kiy0taka
+ */
+public class TableChecksum {
+
+    private static final int DIGITS = 15;
+
+    private static final String HEX = "0123456789abcdef";
+
+    private final ConcurrentMap<String, BigInteger[]> expectedChecksums = new ConcurrentHashMap<String, BigInteger[]>();
+
+    /**
+     * Compare the checksum of the database table with the expected table.
+     * @param conn database connection
+     * @param metaData database table metadata
+     * @param expected expected table
+     * @param rtrim right trim database string values
+     * @param key cache key of the expected table checksum
+     * @return true if checksums are equal, false if not equal or not supported
+     * @throws SQLException SQL error
+     * @throws DataSetException DbUnit error
+     */
+    public boolean matches(IDatabaseConnection conn, ITableMetaData metaData, ITable expected, boolean rtrim,
+        String key) throws SQLException, DataSetException {
+
+        Dialect dialect = Dialect.of(conn.getConnection());
+        Column[] columns = columns(metaData, expected.getTableMetaData());
+        if (dialect.digestAlgorithm() == null || columns == null) {
+            return false;
+        }
+        String escapePattern = (String) conn.getConfig().getProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN);
+        TableQuery query = new TableQuery(metaData.getTableName(), conn.getSchema(), escapePattern).columns(columns);
+        BigInteger[] expectedChecksum = expectedChecksums.get(key);
+        if (expectedChecksum == null) {
+            expectedChecksum = checksum(expected, columns, query.scales(conn.getConnection()),
+                dialect.digestAlgorithm());
+            expectedChecksums.put(key, expectedChecksum);
+        }
+        // empty if the expected table has numbers the database columns cannot store exactly
+        return expectedChecksum.length > 0
+            && Arrays.equals(expectedChecksum, checksum(conn, query, dialect, columns, rtrim));
+    }
+
+    private static Column[] columns(ITableMetaData metaData, ITableMetaData expected) throws DataSetException {
+        Column[] result = new Column[expected.getColumns().length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Columns.getColumn(expected.getColumns()[i].getColumnName(), metaData.getColumns());
+            if (result[i] == null) {
+                return null;
+            }
+        }
+        return result.length == 0 ? null : result;
+    }
+
+    private static BigInteger[] checksum(ITable expected, Column[] columns, int[] scales, String algorithm)
+        throws DataSetException {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        BigInteger sum = BigInteger.ZERO;
+        int rowCount = expected.getRowCount();
+        for (int row = 0; row < rowCount; row++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                Object value = columns[i].getDataType().typeCast(expected.getValue(row, columns[i].getColumnName()));
+                if (value instanceof BigDecimal) {
+                    BigDecimal number = (BigDecimal) value;
+                    if (number.stripTrailingZeros().scale() > scales[i]) {
+                        return new BigInteger[0];
+                    }
+                    value = number.setScale(scales[i], RoundingMode.UNNECESSARY).toPlainString();
+                }
+                sb.append(i == 0 ? "" : "|").append(value == null ? "n" : "v" + value);
+            }
+            byte[] bytes;
+            try {
+                bytes = digest.digest(sb.toString().getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+            sum = sum.add(new BigInteger(1, Arrays.copyOf(bytes, 8)).shiftRight(64 - DIGITS * 4));
+        }
+        return new BigInteger[] {BigInteger.valueOf(rowCount), sum};
+    }
+
+    private static BigInteger[] checksum(IDatabaseConnection conn, TableQuery query, Dialect dialect,
+        Column[] columns, boolean rtrim) throws SQLException {
+
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            String column = query.escape(columns[i].getColumnName());
+            if (rtrim && columns[i].getDataType().getTypeClass() == String.class) {
+                column = dialect.rtrim(column);
+            }
+            row.append(i == 0 ? "" : " || '|' || ")
+                .append("COALESCE('v' || CAST(").append(column).append(" AS VARCHAR), 'n')");
+        }
+        StringBuilder number = new StringBuilder();
+        for (int i = 0; i < DIGITS; i++) {
+            number.append(i == 0 ? "" : " + ")
+                .append("CAST(POSITION(SUBSTRING(h FROM ").append(i + 1).append(" FOR 1) IN '").append(HEX)
+                .append("') - 1 AS BIGINT) * ").append(BigInteger.valueOf(16).pow(DIGITS - 1 - i));
+        }
+        String sql = "select count(*), sum(" + number + ") from (select "
+            + dialect.hexDigest(row.toString()) + " h from " + query.getQualifiedTableName() + ") d";
+        Statement stmt = conn.getConnection().createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery(sql);
+            rs.next();
+            BigDecimal sum = rs.getBigDecimal(2);
+            return new BigInteger[] {
+                BigInteger.valueOf(rs.getLong(1)), sum == null ? BigInteger.ZERO : sum.toBigInteger()};
+        } finally {
+            stmt.close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.util.QualifiedTableName;
+
+/**
+ * SELECT statement builder for a single table.
+ * @author kiy0taka
+ */
+public class TableQuery {
+
+    private final String tableName;
+
+    private final String schema;
+
+    private final String escapePattern;
+
+    private Column[] columns = new Column[0];
+
+    private Column[] orderBy = new Column[0];
+
+    private final List<String> conditions = new ArrayList<String>();
+
+    /**
+     * Create new query.
+     * @param tableName table name
+     * @param schema schema name, or null
+     * @param escapePattern escape pattern, or null
+     */
+    public TableQuery(String tableName, String schema, String escapePattern) {
+        this.tableName = tableName;
+        this.schema = schema;
+        this.escapePattern = escapePattern;
+    }
+
+    /**
+     * Set select columns.
+     * @param selectColumns columns
+     * @return this query
+     */
+    public TableQuery columns(Column... selectColumns) {
+        this.columns = selectColumns;
+        return this;
+    }
+
+    /**
+     * Set order by columns.
+     * @param orderByColumns columns
+     * @return this query
+     */
+    public TableQuery orderBy(Column... orderByColumns) {
+        this.orderBy = orderByColumns;
+        return this;
+    }
+
+    /**
+     * Add condition. Conditions are joined with AND.
+     * @param condition SQL condition
+     * @return this query
+     */
+    public TableQuery where(String condition) {
+        conditions.add(condition);
+        return this;
+    }
+
+    /**
+     * Escape column name.
+     * @param columnName column name
+     * @return escaped column name
+     */
+    public String escape(String columnName) {
+        return new QualifiedTableName(columnName, null, escapePattern).getQualifiedName();
+    }
+
+    /**
+     * Qualified table name.
+     * @return table name with schema
+     */
+    public String getQualifiedTableName() {
+        return new QualifiedTableName(tableName, schema, escapePattern).getQualifiedName();
+    }
+
+    /**
+     * Scales of the select columns, from the result set metadata of an empty query.
+     * @param conn connection
+     * @return scales in select columns order
+     * @throws SQLException SQL error
+     */
+    public int[] scales(Connection conn) throws SQLException {
+        StringBuilder sb = new StringBuilder("select ");
+        append(sb, columns);
+        sb.append(" from ").append(getQualifiedTableName()).append(" where 1 = 0");
+        Statement stmt = conn.createStatement();
+        try {
+            ResultSetMetaData metaData = stmt.executeQuery(sb.toString()).getMetaData();
+            int[] result = new int[metaData.getColumnCount()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = metaData.getScale(i + 1);
+            }
+            return result;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Build SELECT statement.
+     * @return SQL
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder("select ");
+        append(sb, columns);
+        sb.append(" from ").append(getQualifiedTableName());
+        for (int i = 0; i < conditions.size(); i++) {
+            sb.append(i == 0 ? " where " : " and ").append(conditions.get(i));
+        }
+        if (orderBy.length > 0) {
+            sb.append(" order by ");
+            append(sb, orderBy);
+        }
+        return sb.toString();
+    }
+
+    private void append(StringBuilder sb, Column[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(escape(names[i].getColumnName()));
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.FileNotFoundException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dbunit.dataset.IDataSet;
+import org.junit.runners.model.FrameworkField;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.TestClass;
+
+/**
+ * Reflective work of a test class done once and shared by all test methods.
+ * Holds the {@link DbUnitTest} annotations, the resolved fixture files and the accessible
+ * {@link TestConnection} and {@link TestDataSource} fields. Unresolved fixtures are kept as errors
+ * and reported by {@link #checkFixtures()}.
+ * @author kiy0taka
+ */
+public final class TestPlan {
+
+    private final Class<?> javaClass;
+
+    private final Map<Method, DbUnitTest> annotations;
+
+    private final Map<String, URL> urls;
+
+    private final Map<String, DataSetType> types;
+
+    private final Map<String, Exception> errors;
+
+    private final Map<String, String> fixtureMethods;
+
+    private final List<Field> connectionFields;
+
+    private final List<Field> dataSourceFields;
+
+    /**
+     * Compile test plan.
+     * @param testClass test class
+     */
+    public TestPlan(TestClass testClass) {
+        javaClass = testClass.getJavaClass();
+        Map<Method, DbUnitTest> annotationMap = new HashMap<Method, DbUnitTest>();
+        Map<String, URL> urlMap = new HashMap<String, URL>();
+        Map<String, DataSetType> typeMap = new HashMap<String, DataSetType>();
+        Map<String, Exception> errorMap = new LinkedHashMap<String, Exception>();
+        Map<String, String> methodMap = new HashMap<String, String>();
+        for (FrameworkMethod method : testClass.getAnnotatedMethods(DbUnitTest.class)) {
+            DbUnitTest ann = method.getAnnotation(DbUnitTest.class);
+            annotationMap.put(method.getMethod(), ann);
+            String[] dataSets = ann.expected().isEmpty()
+                ? new String[] {ann.init()} : new String[] {ann.init(), ann.expected()};
+            for (String path : dataSets) {
+                if (!methodMap.containsKey(path)) {
+                    methodMap.put(path, method.getName());
+                    try {
+                        urlMap.put(path, resolve(path));
+                        typeMap.put(path, DataSetType.forPath(path));
+                    } catch (Exception e) {
+                        errorMap.put(path, e);
+                    }
+                }
+            }
+            if (!ann.sqlScript().isEmpty() && !methodMap.containsKey(ann.sqlScript())) {
+                methodMap.put(ann.sqlScript(), method.getName());
+                try {
+                    urlMap.put(ann.sqlScript(), resolve(ann.sqlScript()));
+                } catch (FileNotFoundException e) {
+                    errorMap.put(ann.sqlScript(), e);
+                }
+            }
+        }
+        annotations = Collections.unmodifiableMap(annotationMap);
+        urls = Collections.unmodifiableMap(urlMap);
+        types = Collections.unmodifiableMap(typeMap);
+        errors = Collections.unmodifiableMap(errorMap);
+        fixtureMethods = Collections.unmodifiableMap(methodMap);
+        connectionFields = accessibleFields(testClass, TestConnection.class);
+        dataSourceFields = accessibleFields(testClass, TestDataSource.class);
+    }
+
+    /**
+     * Annotation of the test method.
+     * @param method test method
+     * @return annotation, or null if not annotated
+     */
+    public DbUnitTest getAnnotation(FrameworkMethod method) {
+        DbUnitTest result = annotations.get(method.getMethod());
+        return result != null || annotations.containsKey(method.getMethod())
+            ? result : method.getAnnotation(DbUnitTest.class);
+    }
+
+    /**
+     * Resolved fixture file.
+     * Paths not referenced by annotations are resolved on each call.
+     * @param path path relative to the test class
+     * @return fixture URL
+     */
+    public URL getResource(String path) {
+        URL result = urls.get(path);
+        if (result != null) {
+            return result;
+        }
+        Exception error = errors.get(path);
+        if (error instanceof FileNotFoundException) {
+            throw new RuntimeException(error);
+        }
+        try {
+            return resolve(path);
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Load dataset of the fixture file.
+     * @param path path relative to the test class
+     * @return dataset
+     */
+    public IDataSet createDataSet(String path) {
+        return createDataSet(path, DataSetType.xml, DataSetType.xls);
+    }
+
+    /**
+     * Load dataset of the fixture file.
+     * @param path path relative to the test class
+     * @param xmlType type used for {@link DataSetType#xml} files
+     * @param xlsType type used for {@link DataSetType#xls} files
+     * @return dataset
+     */
+    public IDataSet createDataSet(String path, DataSetType xmlType, DataSetType xlsType) {
+        URL url = getResource(path);
+        try {
+            DataSetType type = getType(path, xmlType, xlsType);
+            String[] tableNames = tableNames(path);
+            return tableNames == null ? type.createDataSet(url) : type.createDataSet(url, tableNames);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Type of the fixture file.
+     * @param path path relative to the test class
+     * @param xmlType type used for {@link DataSetType#xml} files
+     * @param xlsType type used for {@link DataSetType#xls} files
+     * @return dataset type
+     * @throws IllegalArgumentException unknown suffix
+     */
+    public DataSetType getType(String path, DataSetType xmlType, DataSetType xlsType) {
+        DataSetType result = types.get(path);
+        if (result == null) {
+            result = DataSetType.forPath(path);
+        }
+        if (result == DataSetType.xml) {
+            return xmlType;
+        }
+        return result == DataSetType.xls ? xlsType : result;
+    }
+
+    /**
+     * Fail if any fixture file referenced by annotations is missing or of unknown type.
+     */
+    public void checkFixtures() {
+        if (errors.isEmpty()) {
+            return;
+        }
+        StringBuilder message = new StringBuilder("Invalid fixtures of ").append(javaClass.getName()).append(':');
+        for (Map.Entry<String, Exception> entry : errors.entrySet()) {
+            message.append("\n  ").append(entry.getKey())
+                .append(" (").append(fixtureMethods.get(entry.getKey())).append("): ")
+                .append(entry.getValue());
+        }
+        throw new RuntimeException(message.toString(), errors.values().iterator().next());
+    }
+
+    /**
+     * Accessible fields annotated by {@link TestConnection}.
+     * @return fields
+     */
+    public List<Field> getConnectionFields() {
+        return connectionFields;
+    }
+
+    /**
+     * Accessible fields annotated by {@link TestDataSource}.
+     * @return fields
+     */
+    public List<Field> getDataSourceFields() {
+        return dataSourceFields;
+    }
+
+    private URL resolve(String path) throws FileNotFoundException {
+        String resource = resourcePath(path);
+        URL url = javaClass.getResource(resource);
+        if (url == null) {
+            throw new FileNotFoundException(resource);
+        }
+        return url;
+    }
+
+    /**
+     * File part of the fixture path.
+     * @param path fixture path, optionally followed by <code>#table1,table2</code>
+     * @return file path
+     */
+    static String resourcePath(String path) {
+        int index = path.indexOf('#');
+        return index < 0 ? path : path.substring(0, index);
+    }
+
+    /**
+     * Tables selected by the fixture path.
+     * @param path fixture path, optionally followed by <code>#table1,table2</code>
+     * @return table names, or null if not selected
+     */
+    static String[] tableNames(String path) {
+        int index = path.indexOf('#');
+        if (index < 0) {
+            return null;
+        }
+        String[] result = path.substring(index + 1).split(",");
+        for (int i = 0; i < result.length; i++) {
+            result[i] = result[i].trim();
+        }
+        return result;
+    }
+
+    private static List<Field> accessibleFields(TestClass testClass, Class<? extends Annotation> annotation) {
+        List<Field> result = new ArrayList<Field>();
+        for (FrameworkField ff : testClass.getAnnotatedFields(annotation)) {
+            Field f = ff.getField();
+            AccessController.doPrivileged(new SetAccessibleAction(f));
+            result.add(f);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static class SetAccessibleAction implements PrivilegedAction<Object> {
+
+        private Field field;
+
+        public SetAccessibleAction(Field field) {
+            this.field = field;
+        }
+
+        public Object run() {
+            field.setAccessible(true);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.operation.AbstractOperation;
+import org.dbunit.operation.DatabaseOperation;
+
+/**
+ * Truncate dataset tables with referential integrity disabled, then insert dataset.
+ * Tables are truncated once each in reverse order of seeing them, in a single batch.
+ * @author kiy0taka
+ */
+public class TruncateInsertOperation extends AbstractOperation {
+
+    /**
+     * @see org.dbunit.operation.DatabaseOperation#execute(org.dbunit.database.IDatabaseConnection, org.dbunit.dataset.IDataSet)
+     */
+    public void execute(IDatabaseConnection connection, IDataSet dataSet)
+        throws DatabaseUnitException, SQLException {
+
+        List<String> tableNames = new ArrayList<String>(
+            new LinkedHashSet<String>(Arrays.asList(dataSet.getTableNames())));
+        if (!tableNames.isEmpty()) {
+            Collections.reverse(tableNames);
+            truncate(connection, tableNames);
+        }
+        DatabaseOperation.INSERT.execute(connection, dataSet);
+    }
+
+    private void truncate(IDatabaseConnection connection, List<String> tableNames) throws SQLException {
+        Connection conn = connection.getConnection();
+        Dialect dialect = Dialect.of(conn);
+        Statement stmt = conn.createStatement();
+        try {
+            execute(stmt, dialect.disableReferentialIntegrity());
+            try {
+                for (String tableName : tableNames) {
+                    stmt.addBatch(dialect.truncateTable(getQualifiedName(connection.getSchema(), tableName, connection)));
+                }
+                stmt.executeBatch();
+            } finally {
+                execute(stmt, dialect.enableReferentialIntegrity());
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static void execute(Statement stmt, String sql) throws SQLException {
+        if (sql != null) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.IOException;
+
+import junit.framework.ComparisonFailure;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.Columns;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.UnknownDataType;
+
+/**
+ * Table assertion with {@link ValueComparator}s resolved once per column.
+ * Failure messages are the same as {@link org.dbunit.Assertion}, with key values of the row if given.
+ * @author kiy0taka
+ */
+public final class TypedAssertion {
+
+    private TypedAssertion() {
+    }
+
+    /**
+     * Assert tables are equal, failing on the first difference.
+     * @param expected expected table
+     * @param actual actual table
+     * @param rtrim ignore trailing spaces of string values
+     * @throws DataSetException DbUnit error
+     */
+    public static void assertEquals(ITable expected, ITable actual, boolean rtrim) throws DataSetException {
+        String tableName = expected.getTableMetaData().getTableName();
+        assertEquals(expected, actual, rtrim, new Column[0], new DiffReporter(tableName, 1, null));
+    }
+
+    /**
+     * Assert tables are equal.
+     * Value differences are reported by the reporter with the key values of the row.
+     * @param expected expected table
+     * @param actual actual table
+     * @param rtrim ignore trailing spaces of string values
+     * @param keys key columns identifying rows in the failure message
+     * @param reporter value difference reporter
+     * @throws DataSetException DbUnit error
+     */
+    public static void assertEquals(ITable expected, ITable actual, boolean rtrim, Column[] keys,
+        DiffReporter reporter) throws DataSetException {
+
+        ITableMetaData expectedMetaData = expected.getTableMetaData();
+        ITableMetaData actualMetaData = actual.getTableMetaData();
+        String tableName = expectedMetaData.getTableName();
+        int rowCount = expected.getRowCount();
+        if (rowCount != actual.getRowCount()) {
+            throw new ComparisonFailure("row count (table=" + tableName + ")",
+                String.valueOf(rowCount), String.valueOf(actual.getRowCount()));
+        }
+        if (rowCount == 0) {
+            return;
+        }
+        Columns.ColumnDiff columnDiff = Columns.getColumnDiff(expectedMetaData, actualMetaData);
+        if (columnDiff.hasDifference()) {
+            throw new ComparisonFailure(columnDiff.getMessage(),
+                Columns.getColumnNamesAsString(Columns.getSortedColumns(expectedMetaData)),
+                Columns.getColumnNamesAsString(Columns.getSortedColumns(actualMetaData)));
+        }
+        Column[] columns = Columns.getSortedColumns(expectedMetaData);
+        String[] names = new String[columns.length];
+        ValueComparator[] comparators = new ValueComparator[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = columns[i].getColumnName();
+            Column column = columns[i].getDataType() instanceof UnknownDataType
+                ? Columns.getColumn(names[i], actualMetaData.getColumns()) : columns[i];
+            comparators[i] = ValueComparator.forColumn(column, rtrim);
+        }
+        try {
+            compareValues(expected, actual, names, comparators, keys, reporter);
+            reporter.report();
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        } finally {
+            reporter.close();
+        }
+    }
+
+    private static void compareValues(ITable expected, ITable actual, String[] names,
+        ValueComparator[] comparators, Column[] keys, DiffReporter reporter) throws DataSetException, IOException {
+
+        String tableName = expected.getTableMetaData().getTableName();
+        for (int row = 0; row < expected.getRowCount(); row++) {
+            for (int i = 0; i < names.length; i++) {
+                Object expectedValue = expected.getValue(row, names[i]);
+                Object actualValue = actual.getValue(row, names[i]);
+                if (comparators[i].compare(expectedValue, actualValue) == 0) {
+                    continue;
+                }
+                if (reporter.isFailFast()) {
+                    String message = "value (table=" + tableName + ", " + row(actual, row, keys)
+                        + ", col=" + names[i] + ")";
+                    throw new ComparisonFailure(message, String.valueOf(expectedValue), String.valueOf(actualValue));
+                }
+                if (!reporter.add(row(actual, row, keys), names[i], expectedValue, actualValue)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static String row(ITable table, int row, Column[] keys) throws DataSetException {
+        StringBuilder result = new StringBuilder("row=").append(row);
+        for (Column key : keys) {
+            result.append(", ").append(key.getColumnName()).append('=')
+                .append(table.getValue(row, key.getColumnName()));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Types;
+import java.util.Comparator;
+import java.util.Date;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * Value comparator specialized by column data type.
+ * The data type is resolved once, values are compared without {@link DataType#compare(Object, Object)}
+ * except for types not handled here. Null is less than any value.
+ * @author kiy0taka
+ */
+public abstract class ValueComparator implements Comparator<Object> {
+
+    /**
+     * Data type of the column.
+     */
+    protected final DataType dataType;
+
+    /**
+     * Create comparator.
+     * @param dataType column data type, used for values that need type casting
+     */
+    protected ValueComparator(DataType dataType) {
+        this.dataType = dataType;
+    }
+
+    /**
+     * Create comparator for the column data type.
+     * @param column column
+     * @param rtrim ignore trailing spaces of string values
+     * @return comparator
+     */
+    public static ValueComparator forColumn(Column column, boolean rtrim) {
+        DataType dataType = column.getDataType();
+        switch (dataType.getSqlType()) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+            return new LongComparator(dataType);
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+            return new DecimalComparator(dataType);
+        case Types.DATE:
+        case Types.TIME:
+        case Types.TIMESTAMP:
+            return new DateComparator(dataType);
+        case Types.CHAR:
+        case Types.VARCHAR:
+        case Types.LONGVARCHAR:
+        case Types.CLOB:
+            return new StringComparator(dataType, rtrim);
+        default:
+            return new DataTypeComparator(dataType);
+        }
+    }
+
+    /**
+     * Compare values.
+     * @param o1 value or null
+     * @param o2 value or null
+     * @return comparison result
+     * @throws IllegalArgumentException value can not be cast to the column data type
+     */
+    public int compare(Object o1, Object o2) {
+        if (o1 == o2) {
+            return 0;
+        } else if (o1 == null) {
+            return -1;
+        } else if (o2 == null) {
+            return 1;
+        }
+        try {
+            return compareNonNulls(o1, o2);
+        } catch (TypeCastException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Compare non null values.
+     * @param o1 value
+     * @param o2 value
+     * @return comparison result
+     * @throws TypeCastException value can not be cast to the column data type
+     */
+    protected abstract int compareNonNulls(Object o1, Object o2) throws TypeCastException;
+
+    /**
+     * Compare by {@link DataType#compare(Object, Object)}.
+     */
+    private static class DataTypeComparator extends ValueComparator {
+
+        public DataTypeComparator(DataType dataType) {
+            super(dataType);
+        }
+
+        protected int compareNonNulls(Object o1, Object o2) throws TypeCastException {
+            return dataType.compare(o1, o2);
+        }
+    }
+
+    /**
+     * Compare as {@link BigDecimal}, ignoring scale.
+     */
+    private static class DecimalComparator extends ValueComparator {
+
+        public DecimalComparator(DataType dataType) {
+            super(dataType);
+        }
+
+        protected int compareNonNulls(Object o1, Object o2) throws TypeCastException {
+            return toDecimal(o1).compareTo(toDecimal(o2));
+        }
+
+        private BigDecimal toDecimal(Object value) throws TypeCastException {
+            if (value instanceof BigDecimal) {
+                return (BigDecimal) value;
+            } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+                return BigDecimal.valueOf(((Number) value).longValue());
+            } else if (value instanceof BigInteger) {
+                return new BigDecimal((BigInteger) value);
+            }
+            try {
+                return new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException e) {
+                return (BigDecimal) DataType.NUMERIC.typeCast(dataType.typeCast(value));
+            }
+        }
+    }
+
+    /**
+     * Compare as long, or as {@link BigDecimal} if out of range.
+     */
+    private static class LongComparator extends DecimalComparator {
+
+        public LongComparator(DataType dataType) {
+            super(dataType);
+        }
+
+        protected int compareNonNulls(Object o1, Object o2) throws TypeCastException {
+            try {
+                long l1 = toLong(o1);
+                long l2 = toLong(o2);
+                return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+            } catch (NumberFormatException e) {
+                return super.compareNonNulls(o1, o2);
+            }
+        }
+
+        private static long toLong(Object value) {
+            if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+                return ((Number) value).longValue();
+            } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < Long.SIZE) {
+                return ((BigInteger) value).longValue();
+            } else if (value instanceof String) {
+                return Long.parseLong(((String) value).trim());
+            }
+            throw new NumberFormatException(value.toString());
+        }
+    }
+
+    /**
+     * Compare as epoch milliseconds.
+     */
+    private static class DateComparator extends ValueComparator {
+
+        public DateComparator(DataType dataType) {
+            super(dataType);
+        }
+
+        protected int compareNonNulls(Object o1, Object o2) throws TypeCastException {
+            long l1 = toMillis(o1);
+            long l2 = toMillis(o2);
+            return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+        }
+
+        private long toMillis(Object value) throws TypeCastException {
+            Object date = value instanceof Date ? value : dataType.typeCast(value);
+            if (date instanceof Date) {
+                return ((Date) date).getTime();
+            }
+            throw new TypeCastException(value, dataType);
+        }
+    }
+
+    /**
+     * Compare strings, optionally ignoring trailing spaces.
+     */
+    private static class StringComparator extends ValueComparator {
+
+        private final boolean rtrim;
+
+        public StringComparator(DataType dataType, boolean rtrim) {
+            super(dataType);
+            this.rtrim = rtrim;
+        }
+
+        protected int compareNonNulls(Object o1, Object o2) throws TypeCastException {
+            if (o1 instanceof String && o2 instanceof String) {
+                return rtrim ? rtrim((String) o1).compareTo(rtrim((String) o2)) : ((String) o1).compareTo((String) o2);
+            }
+            return dataType.compare(o1, o2);
+        }
+
+        private static String rtrim(String value) {
+            int end = value.length();
+            while (end > 0 && value.charAt(end - 1) == ' ') {
+                end--;
+            }
+            return value.substring(0, end);
+        }
+    }
+}
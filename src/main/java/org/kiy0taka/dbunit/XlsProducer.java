@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.datatype.DataTypeException;
+
+/**
+ * Excel 97-2003 (.xls) producer using the HSSF event API.
+ * Records are read one by one without building the workbook object model.
+ * Formula cells give their cached result.
+ * @author kiy0taka
+ */
+public class XlsProducer extends AbstractExcelProducer {
+
+    private InputStream in;
+
+    /**
+     * Create producer.
+     * @param in workbook stream
+     */
+    public XlsProducer(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @see org.dbunit.dataset.stream.IDataSetProducer#produce()
+     */
+    public void produce() throws DataSetException {
+        startDataSet();
+        try {
+            Listener listener = new Listener();
+            // format records are tracked before the cells are passed to the listener
+            listener.formats = new FormatTrackingHSSFListener(listener);
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(listener.formats);
+            new HSSFEventFactory().processWorkbookEvents(request, new POIFSFileSystem(in));
+        } catch (ListenerException e) {
+            throw e.getCause();
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        }
+        endDataSet();
+    }
+
+    /**
+     * Record listener emitting cells.
+     */
+    private class Listener implements HSSFListener {
+
+        private FormatTrackingHSSFListener formats;
+
+        private List<BoundSheetRecord> sheets = new ArrayList<BoundSheetRecord>();
+
+        private BoundSheetRecord[] orderedSheets;
+
+        private SSTRecord sst;
+
+        private int depth;
+
+        private int sheetIndex = -1;
+
+        private boolean worksheet;
+
+        private FormulaRecord stringFormula;
+
+        private boolean date1904;
+
+        public void processRecord(Record record) {
+            try {
+                process(record);
+            } catch (DataSetException e) {
+                throw new ListenerException(e);
+            }
+        }
+
+        private void process(Record record) throws DataSetException {
+            if (record instanceof BOFRecord) {
+                depth++;
+                if (depth == 1 && ((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK) {
+                    sheetIndex++;
+                    worksheet = ((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET;
+                    if (worksheet) {
+                        startSheet(sheetName());
+                    }
+                }
+            } else if (record instanceof EOFRecord) {
+                depth--;
+                if (depth == 0 && worksheet) {
+                    endSheet();
+                    worksheet = false;
+                }
+            } else if (record instanceof DateWindow1904Record) {
+                date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+            } else if (record instanceof BoundSheetRecord) {
+                sheets.add((BoundSheetRecord) record);
+            } else if (record instanceof SSTRecord) {
+                sst = (SSTRecord) record;
+            } else if (worksheet && depth == 1) {
+                processCell(record);
+            }
+        }
+
+        private void processCell(Record record) throws DataSetException {
+            if (record instanceof StringRecord) {
+                if (stringFormula != null) {
+                    cell(stringFormula.getRow(), stringFormula.getColumn(), ((StringRecord) record).getString());
+                    stringFormula = null;
+                }
+            } else if (record instanceof LabelSSTRecord) {
+                LabelSSTRecord label = (LabelSSTRecord) record;
+                cell(label.getRow(), label.getColumn(), sst.getString(label.getSSTIndex()).getString());
+            } else if (record instanceof LabelRecord) {
+                LabelRecord label = (LabelRecord) record;
+                cell(label.getRow(), label.getColumn(), label.getValue());
+            } else if (record instanceof NumberRecord) {
+                NumberRecord number = (NumberRecord) record;
+                cell(number.getRow(), number.getColumn(), numericValue(number, number.getValue()));
+            } else if (record instanceof RKRecord) {
+                RKRecord number = (RKRecord) record;
+                cell(number.getRow(), number.getColumn(), numericValue(number, number.getRKNumber()));
+            } else if (record instanceof MulRKRecord) {
+                MulRKRecord numbers = (MulRKRecord) record;
+                for (int i = 0; i < numbers.getNumColumns(); i++) {
+                    NumberRecord number = new NumberRecord();
+                    number.setXFIndex(numbers.getXFAt(i));
+                    cell(numbers.getRow(), numbers.getFirstColumn() + i,
+                        numericValue(number, numbers.getRKNumberAt(i)));
+                }
+            } else if (record instanceof BoolErrRecord) {
+                BoolErrRecord bool = (BoolErrRecord) record;
+                if (bool.isError()) {
+                    throw new DataTypeException("Error at row=" + bool.getRow() + ", column=" + bool.getColumn());
+                }
+                cell(bool.getRow(), bool.getColumn(), Boolean.valueOf(bool.getBooleanValue()));
+            } else if (record instanceof FormulaRecord) {
+                processFormula((FormulaRecord) record);
+            } else if (record instanceof BlankRecord) {
+                BlankRecord blank = (BlankRecord) record;
+                cell(blank.getRow(), blank.getColumn(), null);
+            }
+        }
+
+        private void processFormula(FormulaRecord formula) throws DataSetException {
+            switch (formula.getCachedResultType()) {
+            case HSSFCell.CELL_TYPE_STRING:
+                if (formula.hasCachedResultString()) {
+                    stringFormula = formula;
+                } else {
+                    cell(formula.getRow(), formula.getColumn(), "");
+                }
+                break;
+            case HSSFCell.CELL_TYPE_BOOLEAN:
+                cell(formula.getRow(), formula.getColumn(), Boolean.valueOf(formula.getCachedBooleanValue()));
+                break;
+            case HSSFCell.CELL_TYPE_ERROR:
+                throw new DataTypeException("Error at row=" + formula.getRow() + ", column=" + formula.getColumn());
+            default:
+                cell(formula.getRow(), formula.getColumn(), numericValue(formula, formula.getValue()));
+            }
+        }
+
+        private Object numericValue(CellValueRecordInterface record, double value) {
+            return XlsProducer.this.numericValue(value,
+                formats.getFormatIndex(record), formats.getFormatString(record), date1904);
+        }
+
+        private String sheetName() {
+            if (orderedSheets == null) {
+                orderedSheets = BoundSheetRecord.orderByBofPosition(sheets);
+            }
+            return orderedSheets[sheetIndex].getSheetname();
+        }
+    }
+
+    /**
+     * Carries {@link DataSetException} out of the listener.
+     */
+    private static class ListenerException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public ListenerException(DataSetException cause) {
+            super(cause);
+        }
+
+        @Override
+        public DataSetException getCause() {
+            return (DataSetException) super.getCause();
+        }
+    }
+}
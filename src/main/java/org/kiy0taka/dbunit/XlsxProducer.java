@@ -0,0 +1,351 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.poi.hssf.usermodel.HSSFDataFormat;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.datatype.DataTypeException;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Excel 2007 (.xlsx) producer reading the workbook parts by SAX.
+ * Shared strings and styles are held in memory, sheet rows are emitted as they are parsed.
+ * Formula cells give their cached result.
+ * @author kiy0taka
+ */
+public class XlsxProducer extends AbstractExcelProducer {
+
+    private static final String RELATIONSHIPS_NS =
+        "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private URL url;
+
+    private InputStream in;
+
+    private SAXParserFactory factory = SAXParserFactory.newInstance();
+
+    private List<String> sharedStrings = new ArrayList<String>();
+
+    private List<Integer> cellFormats = new ArrayList<Integer>();
+
+    private Map<Integer, String> numberFormats = new HashMap<Integer, String>();
+
+    private boolean date1904;
+
+    /**
+     * Create producer.
+     * @param url workbook file
+     */
+    public XlsxProducer(URL url) {
+        this.url = url;
+        factory.setNamespaceAware(true);
+    }
+
+    /**
+     * Create producer of the stream, which is copied to a temporary file.
+     * The stream is not closed.
+     * @param in workbook stream
+     */
+    public XlsxProducer(InputStream in) {
+        this.in = in;
+        factory.setNamespaceAware(true);
+    }
+
+    /**
+     * @see org.dbunit.dataset.stream.IDataSetProducer#produce()
+     */
+    public void produce() throws DataSetException {
+        File temp = null;
+        try {
+            File file;
+            if (url != null && "file".equals(url.getProtocol()) && !DataSetType.isCompressed(url.getPath())) {
+                file = new File(url.toURI());
+            } else if (url != null) {
+                InputStream stream = DataSetType.openStream(url);
+                try {
+                    temp = copy(stream);
+                } finally {
+                    stream.close();
+                }
+                file = temp;
+            } else {
+                temp = copy(in);
+                file = temp;
+            }
+            ZipFile zip = new ZipFile(file);
+            try {
+                produce(zip);
+            } finally {
+                zip.close();
+            }
+        } catch (URISyntaxException e) {
+            throw new DataSetException(e);
+        } catch (IOException e) {
+            throw new DataSetException(e);
+        } catch (SAXException e) {
+            throw e.getException() instanceof DataSetException
+                ? (DataSetException) e.getException() : new DataSetException(e);
+        } catch (ParserConfigurationException e) {
+            throw new DataSetException(e);
+        } finally {
+            if (temp != null && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    private void produce(ZipFile zip) throws DataSetException, IOException, SAXException,
+        ParserConfigurationException {
+
+        final Map<String, String> targets = new HashMap<String, String>();
+        parse(zip, "xl/_rels/workbook.xml.rels", new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if ("Relationship".equals(localName)) {
+                    String target = attributes.getValue("Target");
+                    targets.put(attributes.getValue("Id"),
+                        target.startsWith("/") ? target.substring(1) : "xl/" + target);
+                }
+            }
+        });
+        final List<String[]> sheets = new ArrayList<String[]>();
+        parse(zip, "xl/workbook.xml", new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if ("workbookPr".equals(localName)) {
+                    String value = attributes.getValue("date1904");
+                    date1904 = "1".equals(value) || "true".equals(value);
+                } else if ("sheet".equals(localName)) {
+                    sheets.add(new String[] {
+                        attributes.getValue("name"), targets.get(attributes.getValue(RELATIONSHIPS_NS, "id"))});
+                }
+            }
+        });
+        parse(zip, "xl/sharedStrings.xml", new SharedStringsHandler());
+        parse(zip, "xl/styles.xml", new StylesHandler());
+        startDataSet();
+        for (String[] sheet : sheets) {
+            startSheet(sheet[0]);
+            parse(zip, sheet[1], new SheetHandler());
+            endSheet();
+        }
+        endDataSet();
+    }
+
+    private void parse(ZipFile zip, String name, DefaultHandler handler) throws IOException, SAXException,
+        ParserConfigurationException {
+
+        ZipEntry entry = zip.getEntry(name);
+        if (entry == null) {
+            return;
+        }
+        InputStream in = zip.getInputStream(entry);
+        try {
+            factory.newSAXParser().parse(in, handler);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static File copy(InputStream in) throws IOException {
+        File result = File.createTempFile("dbunit", ".xlsx");
+        boolean copied = false;
+        try {
+            OutputStream out = new FileOutputStream(result);
+            try {
+                byte[] buf = new byte[8192];
+                for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                    out.write(buf, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+            copied = true;
+        } finally {
+            if (!copied) {
+                result.delete();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Zero based column index of the cell reference. (i.e. "AB12" is 27)
+     * @param ref cell reference
+     * @return column index
+     */
+    static int columnIndex(String ref) {
+        int result = 0;
+        for (int i = 0; i < ref.length() && Character.isLetter(ref.charAt(i)); i++) {
+            result = result * 26 + Character.toUpperCase(ref.charAt(i)) - 'A' + 1;
+        }
+        return result - 1;
+    }
+
+    /**
+     * Shared strings, ignoring phonetic runs.
+     */
+    private class SharedStringsHandler extends DefaultHandler {
+
+        private StringBuilder text;
+
+        private boolean phonetic;
+
+        private boolean inText;
+
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("si".equals(localName)) {
+                text = new StringBuilder();
+            } else if ("rPh".equals(localName)) {
+                phonetic = true;
+            } else if ("t".equals(localName)) {
+                inText = !phonetic;
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            if ("si".equals(localName)) {
+                sharedStrings.add(text.toString());
+            } else if ("rPh".equals(localName)) {
+                phonetic = false;
+            } else if ("t".equals(localName)) {
+                inText = false;
+            }
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            if (inText) {
+                text.append(ch, start, length);
+            }
+        }
+    }
+
+    /**
+     * Number formats of the cell styles.
+     */
+    private class StylesHandler extends DefaultHandler {
+
+        private boolean cellXfs;
+
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("numFmt".equals(localName)) {
+                numberFormats.put(Integer.valueOf(attributes.getValue("numFmtId")), attributes.getValue("formatCode"));
+            } else if ("cellXfs".equals(localName)) {
+                cellXfs = true;
+            } else if (cellXfs && "xf".equals(localName)) {
+                String id = attributes.getValue("numFmtId");
+                cellFormats.add(id == null ? 0 : Integer.parseInt(id));
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            if ("cellXfs".equals(localName)) {
+                cellXfs = false;
+            }
+        }
+    }
+
+    /**
+     * Sheet cells.
+     */
+    private class SheetHandler extends DefaultHandler {
+
+        private int row = -1;
+
+        private int column;
+
+        private String type;
+
+        private int style;
+
+        private StringBuilder value;
+
+        private boolean inValue;
+
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("row".equals(localName)) {
+                String r = attributes.getValue("r");
+                row = r == null ? row + 1 : Integer.parseInt(r) - 1;
+                column = -1;
+            } else if ("c".equals(localName)) {
+                String r = attributes.getValue("r");
+                column = r == null ? column + 1 : columnIndex(r);
+                type = attributes.getValue("t");
+                String s = attributes.getValue("s");
+                style = s == null ? 0 : Integer.parseInt(s);
+                value = null;
+            } else if ("v".equals(localName) || "t".equals(localName) && "inlineStr".equals(type)) {
+                if (value == null) {
+                    value = new StringBuilder();
+                }
+                inValue = true;
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if ("v".equals(localName) || "t".equals(localName)) {
+                inValue = false;
+            } else if ("c".equals(localName)) {
+                try {
+                    cell(row, column, value == null ? null : convert(value.toString()));
+                } catch (DataSetException e) {
+                    throw new SAXException(e);
+                }
+            }
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                value.append(ch, start, length);
+            }
+        }
+
+        private Object convert(String text) throws DataTypeException {
+            if ("s".equals(type)) {
+                return sharedStrings.get(Integer.parseInt(text.trim()));
+            } else if ("str".equals(type) || "inlineStr".equals(type)) {
+                return text;
+            } else if ("b".equals(type)) {
+                return Boolean.valueOf("1".equals(text.trim()) || "true".equals(text.trim()));
+            } else if ("e".equals(type)) {
+                throw new DataTypeException("Error at row=" + row + ", column=" + column);
+            }
+            int formatIndex = style < cellFormats.size() ? cellFormats.get(style) : 0;
+            String formatString = numberFormats.get(formatIndex);
+            if (formatString == null) {
+                formatString = HSSFDataFormat.getBuiltinFormat((short) formatIndex);
+            }
+            return numericValue(Double.parseDouble(text.trim()), formatIndex, formatString, date1904);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataSetPrefetcherTest {
+
+    private ExecutorService executor;
+
+    private List<String> loaded;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        loaded = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void get() {
+        DataSetPrefetcher prefetcher = prefetcher(2, "a.xml", "b.xml", "c.xml");
+        assertEquals(2, prefetcher.size());
+        prefetcher.get("a.xml");
+        prefetcher.get("b.xml");
+        prefetcher.get("c.xml");
+        assertEquals(Arrays.asList("a.xml", "b.xml", "c.xml"), loaded);
+        assertEquals(0, prefetcher.size());
+    }
+
+    @Test
+    public void get_reuse() {
+        DataSetPrefetcher prefetcher = prefetcher(1, "a.xml", "a.xml", "b.xml", "a.xml");
+        IDataSet dataSet = prefetcher.get("a.xml");
+        assertSame(dataSet, prefetcher.get("a.xml"));
+        prefetcher.get("b.xml");
+        prefetcher.get("a.xml");
+        assertEquals(Arrays.asList("a.xml", "b.xml", "a.xml"), loaded);
+    }
+
+    @Test
+    public void get_skipped() {
+        DataSetPrefetcher prefetcher = prefetcher(1, "a.xml", "b.xml", "c.xml");
+        prefetcher.skipTo(2);
+        assertEquals(1, prefetcher.size());
+        prefetcher.get("c.xml");
+        assertEquals(0, prefetcher.size());
+    }
+
+    @Test
+    public void get_reload() {
+        DataSetPrefetcher prefetcher = prefetcher(2, "a.xml", "b.xml", "c.xml", "a.xml");
+        IDataSet dataSet = prefetcher.get("a.xml");
+        prefetcher.get("b.xml");
+        assertEquals(2, prefetcher.size());
+        assertSame(dataSet, prefetcher.get("a.xml"));
+        assertEquals(2, prefetcher.size());
+        prefetcher.get("c.xml");
+        prefetcher.get("a.xml");
+        assertEquals(Arrays.asList("a.xml", "b.xml", "c.xml", "a.xml"), loaded);
+    }
+
+    @Test
+    public void get_out_of_order() {
+        DataSetPrefetcher prefetcher = prefetcher(1, "a.xml", "b.xml", "c.xml");
+        prefetcher.get("c.xml");
+        assertEquals(1, prefetcher.size());
+        prefetcher.get("a.xml");
+        prefetcher.get("b.xml");
+        prefetcher.get("c.xml");
+        Collections.sort(loaded);
+        assertEquals(Arrays.asList("a.xml", "b.xml", "c.xml", "c.xml"), loaded);
+    }
+
+    @Test
+    public void get_unexpected() {
+        DataSetPrefetcher prefetcher = prefetcher(1, "a.xml");
+        prefetcher.get("a.xml");
+        prefetcher.get("x.xml");
+        assertEquals(Arrays.asList("a.xml", "x.xml"), loaded);
+    }
+
+    @Test
+    public void get_error() {
+        DataSetPrefetcher prefetcher = prefetcher(1, "missing.xml");
+        try {
+            prefetcher.get("missing.xml");
+            fail("Expecting RuntimeException");
+        } catch (RuntimeException e) {
+            assertEquals(FileNotFoundException.class, e.getCause().getClass());
+        }
+    }
+
+    private DataSetPrefetcher prefetcher(int window, String... paths) {
+        return new DataSetPrefetcher(Arrays.asList(paths), window, executor, new DataSetPrefetcher.Loader() {
+            public IDataSet load(String path) {
+                if (path.startsWith("missing")) {
+                    throw new RuntimeException(new FileNotFoundException(path));
+                }
+                loaded.add(path);
+                return new DefaultDataSet();
+            }
+        });
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.dbunit.Assertion;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.junit.Test;
+
+public class DataSetTypeTest {
+
+    private static final String CSV = "empno,ename,comm\n7369,SMITH,null\n7499,\"ALLEN, J\",300\n";
+
+    @Test
+    public void forPath() {
+        assertEquals(DataSetType.xml, DataSetType.forPath("emp.xml"));
+        assertEquals(DataSetType.xml, DataSetType.forPath("sample/emp.xml.gz#emp"));
+        assertEquals(DataSetType.xls, DataSetType.forPath("emp.XLS.GZ"));
+        assertEquals(DataSetType.csv, DataSetType.forPath("emp.csv.gz"));
+        assertEquals(DataSetType.zip, DataSetType.forPath("all.zip"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void forPath_unknown() {
+        DataSetType.forPath("emp.txt.gz");
+    }
+
+    @Test
+    public void baseName() {
+        assertEquals("emp", DataSetType.baseName("emp.csv"));
+        assertEquals("emp", DataSetType.baseName("/data/emp.csv.gz"));
+        assertEquals("emp", DataSetType.baseName("emp"));
+    }
+
+    @Test
+    public void xml_gz() throws Exception {
+        URL url = gzip(getClass().getResource("indexed.xml"), ".xml.gz");
+        IDataSet expected = DataSetType.xml.createDataSet(getClass().getResource("indexed.xml"));
+        Assertion.assertEquals(expected, DataSetType.xml.createDataSet(url));
+        Assertion.assertEquals(expected, DataSetType.xmlpull.createDataSet(url));
+        String[] tableNames = {"emp", "bonus"};
+        IDataSet selected = DataSetType.xml.createDataSet(url, tableNames);
+        assertArrayEquals(tableNames, selected.getTableNames());
+        Assertion.assertEquals(expected.getTable("emp"), selected.getTable("emp"));
+    }
+
+    @Test
+    public void xls_gz() throws Exception {
+        URL url = gzip(getClass().getResource("test.xls"), ".xls.gz");
+        Assertion.assertEquals(DataSetType.xls.createDataSet(getClass().getResource("test.xls")),
+            DataSetType.forPath(url.getPath()).createDataSet(url));
+    }
+
+    @Test
+    public void xlsx_gz() throws Exception {
+        URL url = gzip(getClass().getResource("test.xlsx"), ".xlsx.gz");
+        Assertion.assertEquals(DataSetType.xlsx.createDataSet(getClass().getResource("test.xlsx")),
+            DataSetType.xlsx.createDataSet(url));
+    }
+
+    @Test
+    public void csv() throws Exception {
+        File file = File.createTempFile("emp", ".csv.gz");
+        file.deleteOnExit();
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        try {
+            out.write(CSV.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        IDataSet dataSet = DataSetType.csv.createDataSet(file.toURI().toURL());
+        String tableName = DataSetType.baseName(file.getName());
+        assertArrayEquals(new String[] {tableName}, dataSet.getTableNames());
+        ITable emp = dataSet.getTable(tableName);
+        assertEquals(2, emp.getRowCount());
+        assertNull(emp.getValue(0, "comm"));
+        assertEquals("ALLEN, J", emp.getValue(1, "ename"));
+    }
+
+    @Test
+    public void zip() throws Exception {
+        File file = File.createTempFile("dataset", ".zip");
+        file.deleteOnExit();
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            out.putNextEntry(new ZipEntry("data/emp.csv"));
+            out.write(CSV.getBytes("UTF-8"));
+            out.putNextEntry(new ZipEntry("data/dept.csv"));
+            out.write("deptno,dname\n10,ACCOUNTING\n".getBytes("UTF-8"));
+            out.putNextEntry(new ZipEntry("data/bonus.xml"));
+            out.write("<dataset><bonus bonusno='10' empno='7369'/></dataset>".getBytes("UTF-8"));
+            out.putNextEntry(new ZipEntry("data/table-ordering.txt"));
+            out.write("dept\nemp\nbonus\n".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        IDataSet dataSet = DataSetType.zip.createDataSet(file.toURI().toURL());
+        assertArrayEquals(new String[] {"dept", "emp", "bonus"}, dataSet.getTableNames());
+        assertEquals("ACCOUNTING", dataSet.getTable("dept").getValue(0, "dname"));
+        assertEquals(2, dataSet.getTable("emp").getRowCount());
+        assertEquals("7369", dataSet.getTable("bonus").getValue(0, "empno"));
+    }
+
+    @Test
+    public void zip_gz() throws Exception {
+        File file = File.createTempFile("dataset", ".zip");
+        file.deleteOnExit();
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            out.putNextEntry(new ZipEntry("emp.csv.gz"));
+            out.write(gzip(CSV.getBytes("UTF-8")));
+            out.putNextEntry(new ZipEntry("bonus.xml.gz"));
+            out.write(gzip("<dataset><bonus bonusno='10' empno='7369'/></dataset>".getBytes("UTF-8")));
+            out.putNextEntry(new ZipEntry("dept.csv"));
+            out.write("deptno,dname\n10,ACCOUNTING\n".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        IDataSet dataSet = DataSetType.zip.createDataSet(file.toURI().toURL());
+        assertArrayEquals(new String[] {"emp", "bonus", "dept"}, dataSet.getTableNames());
+        assertEquals(2, dataSet.getTable("emp").getRowCount());
+        assertEquals("7369", dataSet.getTable("bonus").getValue(0, "empno"));
+        assertEquals("ACCOUNTING", dataSet.getTable("dept").getValue(0, "dname"));
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        OutputStream out = new GZIPOutputStream(result);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return result.toByteArray();
+    }
+
+    private static URL gzip(URL url, String suffix) throws IOException {
+        File file = File.createTempFile("dataset", suffix);
+        file.deleteOnExit();
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        try {
+            copy(url.openStream(), out);
+        } finally {
+            out.close();
+        }
+        return file.toURI().toURL();
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        try {
+            byte[] buf = new byte[8192];
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                out.write(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
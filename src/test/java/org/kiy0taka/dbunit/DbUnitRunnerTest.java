@@ -23,39 +23,62 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.dbcp.BasicDataSource;
 import org.dbunit.Assertion;
 import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.dataset.DataSetException;
 import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.excel.XlsDataSet;
+import org.dbunit.dataset.filter.DefaultColumnFilter;
 import org.dbunit.dataset.xml.FlatXmlDataSet;
 import org.dbunit.dataset.xml.FlatXmlProducer;
 import org.dbunit.ext.postgresql.PostgresqlDataTypeFactory;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.MethodRule;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.Statement;
 import org.kiy0taka.dbunit.DbUnitRunner.DbUnitStatement;
+import org.kiy0taka.dbunit.DbUnitRunner.ScalingStatement;
 import org.kiy0taka.dbunit.DbUnitTest.Operation;
 import org.xml.sax.InputSource;
 
@@ -130,11 +153,250 @@ public class DbUnitRunnerTest {
         assertTrue(stmt instanceof DbUnitStatement);
     }
 
+    @Test
+    public void computeTestMethods() throws InitializationError {
+        List<String> actual = new ArrayList<String>();
+        for (FrameworkMethod method : new DbUnitRunner(OrderedTestCase.class).computeTestMethods()) {
+            actual.add(method.getName());
+        }
+        assertEquals(Arrays.asList("junit", "test", "emp_read", "emp_write", "emp_read_with_sql", "emp_delete_all"),
+            actual);
+    }
+
+    public static class OrderedTestCase {
+
+        @DbUnitTest(init="test.xml", expected="test.xml")
+        public void emp_write() {}
+
+        @DbUnitTest(init="test.xml", operation=Operation.DELETE_ALL)
+        public void emp_delete_all() {}
+
+        @Test
+        public void junit() {}
+
+        @DbUnitTest(init="test.xml", sql="update ...")
+        public void emp_read_with_sql() {}
+
+        @DbUnitTest(init="test.xml")
+        public void emp_read() {}
+
+        @Test
+        @DbUnitTest(init="test.xls")
+        public void test() {}
+    }
+
+    @Test
+    public void methodBlock_scaling() throws Throwable {
+        FrameworkMethod method = new FrameworkMethod(QuadraticTestCase.class.getMethod("count"));
+        Statement stmt = new DbUnitRunner(QuadraticTestCase.class).methodBlock(method);
+        assertTrue(stmt instanceof ScalingStatement);
+    }
+
+    @Test
+    public void scaling_failure() throws InitializationError {
+        Result result = new JUnitCore().run(new DbUnitRunner(QuadraticTestCase.class) {
+            protected long nanoTime() {
+                return QuadraticTestCase.clock.get();
+            }
+        });
+        assertEquals(1, result.getFailureCount());
+        assertTrue(result.getFailures().get(0).getMessage(),
+            result.getFailures().get(0).getMessage().startsWith("time grows faster than LINEAR at 4x"));
+    }
+
+    @Test
+    public void scaling_rule() throws InitializationError {
+        RuleTestCase.evaluated = 0;
+        new JUnitCore().run(new DbUnitRunner(RuleTestCase.class));
+        assertEquals(3, RuleTestCase.evaluated);
+    }
+
+    public static class RuleTestCase {
+
+        private static int evaluated;
+
+        @Rule
+        public MethodRule rule = new MethodRule() {
+            public Statement apply(final Statement base, FrameworkMethod method, Object target) {
+                return new Statement() {
+                    public void evaluate() throws Throwable {
+                        evaluated++;
+                        base.evaluate();
+                    }
+                };
+            }
+        };
+
+        @DbUnitTest(init="sample/emp.xml")
+        @ScalingTest(factors={1, 2}, repeat=1, warmup=1)
+        public void count() {
+        }
+    }
+
+    public static class QuadraticTestCase {
+
+        private static AtomicLong clock = new AtomicLong();
+
+        @TestConnection
+        private Connection conn;
+
+        @DbUnitTest(init="sample/emp.xml")
+        @ScalingTest(factors={1, 4}, repeat=1, warmup=0)
+        public void count() throws Exception {
+            ResultSet rs = conn.createStatement().executeQuery("select count(*) from emp");
+            assertTrue(rs.next());
+            // takes rows^2 milliseconds on the runner clock
+            clock.addAndGet(rs.getInt(1) * rs.getInt(1) * 1000000L);
+        }
+    }
+
+    @Test
+    public void loadTest() throws Exception {
+        File report = new File("target/load/LoadTestCase.count.txt");
+        report.delete();
+        Result result = new JUnitCore().run(new DbUnitRunner(LoadTestCase.class));
+        assertTrue(result.wasSuccessful());
+        assertEquals(18, LoadTestCase.calls.get());
+        assertEquals(3, LoadTestCase.connections.size());
+        // the test method itself and each worker
+        assertEquals(4, LoadTestCase.evaluated.get());
+        BufferedReader reader = new BufferedReader(new FileReader(report));
+        try {
+            assertTrue(reader.readLine().startsWith("LoadTestCase.count: 3 threads, 15 calls in "));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void loadTest_failure() throws InitializationError {
+        Result result = new JUnitCore().run(new DbUnitRunner(LoadFailureTestCase.class));
+        assertEquals(1, result.getFailureCount());
+        assertEquals("failure", result.getFailures().get(0).getMessage());
+    }
+
+    public static class LoadTestCase {
+
+        private static AtomicInteger calls = new AtomicInteger();
+
+        private static Set<Connection> connections = Collections.synchronizedSet(new HashSet<Connection>());
+
+        private static AtomicInteger evaluated = new AtomicInteger();
+
+        @TestConnection
+        private Connection conn;
+
+        @Rule
+        public MethodRule rule = new MethodRule() {
+            public Statement apply(final Statement base, FrameworkMethod method, Object target) {
+                return new Statement() {
+                    public void evaluate() throws Throwable {
+                        evaluated.incrementAndGet();
+                        base.evaluate();
+                    }
+                };
+            }
+        };
+
+        @DbUnitTest(init="sample/emp.xml")
+        @LoadTest(threads=3, iterations=5, warmup=1)
+        public void count() throws Exception {
+            calls.incrementAndGet();
+            connections.add(conn);
+            ResultSet rs = conn.createStatement().executeQuery("select count(*) from emp");
+            assertTrue(rs.next());
+            assertEquals(3, rs.getInt(1));
+            rs.close();
+        }
+    }
+
+    public static class LoadFailureTestCase {
+
+        @DbUnitTest(init="sample/emp.xml")
+        @LoadTest(threads=2, duration=60000)
+        public void fail() {
+            throw new IllegalStateException("failure");
+        }
+    }
+
+    @Test
+    public void jdbcLimit_failure() throws InitializationError {
+        Result result = new JUnitCore().run(new DbUnitRunner(JdbcLimitTestCase.class));
+        assertEquals(1, result.getFailureCount());
+        assertTrue(result.getFailures().get(0).getMessage(), result.getFailures().get(0).getMessage()
+            .startsWith("JDBC statements exceeded 1: statements=5, roundTrips=5, rows=4, time="));
+    }
+
+    public static class JdbcLimitTestCase {
+
+        @TestDataSource
+        private DataSource dataSource;
+
+        @DbUnitTest(init="sample/emp.xml")
+        @JdbcLimit(statements=1)
+        public void selectEach() throws Exception {
+            Connection conn = dataSource.getConnection();
+            try {
+                PreparedStatement stmt = conn.prepareStatement("select ename from emp where empno = ?");
+                stmt.setInt(1, 7369);
+                stmt.executeQuery().next();
+                ResultSet rs = conn.createStatement().executeQuery("select empno from emp");
+                while (rs.next()) {
+                    stmt.setInt(1, rs.getInt(1));
+                    stmt.executeQuery().close();
+                }
+            } finally {
+                conn.close();
+            }
+        }
+    }
+
     @Test
     public void createDataSource() throws InitializationError {
         assertNotNull(new DbUnitRunner(getClass()).createDataSource());
     }
 
+    @Test
+    public void createDataSource_bounded() throws InitializationError {
+        DbUnitRunner runner = new DbUnitRunner(getClass());
+        runner.maxConnections = 5;
+        BasicDataSource ds = (BasicDataSource) runner.createDataSource();
+        assertEquals(5, ds.getMaxActive());
+        assertTrue(ds.getMaxWait() > 0);
+    }
+
+    @Test
+    public void createDataSource_statementCache() throws Exception {
+        DbUnitRunner runner = new DbUnitRunner(getClass());
+        runner.statementCacheSize = 1;
+        BasicDataSource ds = (BasicDataSource) runner.createDataSource();
+        try {
+            for (int i = 0; i < 2; i++) {
+                Connection conn = ds.getConnection();
+                try {
+                    // more statements open at once than the cache size
+                    List<PreparedStatement> stmts = new ArrayList<PreparedStatement>();
+                    for (int j = 1; j <= 3; j++) {
+                        stmts.add(conn.prepareStatement("select " + j + " from dual"));
+                    }
+                    for (int j = 1; j <= 3; j++) {
+                        ResultSet rs = stmts.get(j - 1).executeQuery();
+                        assertTrue(rs.next());
+                        assertEquals(j, rs.getInt(1));
+                        rs.close();
+                    }
+                    for (PreparedStatement stmt : stmts) {
+                        stmt.close();
+                    }
+                } finally {
+                    conn.close();
+                }
+            }
+        } finally {
+            ds.close();
+        }
+    }
+
     @Test
     public void createDataSource_failure() throws InitializationError {
         try {
@@ -161,6 +423,45 @@ public class DbUnitRunnerTest {
         verifyNoMoreInteractions(conn);
     }
 
+    @Test
+    @DbUnitTest(init="test.xml", operation=Operation.NONE)
+    public void evaluate_shared_connection() throws Throwable {
+
+        Connection conn = mock(Connection.class);
+
+        DbUnitRunner runner = new DbUnitRunner(getClass());
+        runner.shareConnection = true;
+        runner.testConnection = conn;
+        runner.new DbUnitStatement(getAnnotation(), mockStatement()).evaluate();
+
+        verify(conn, times(2)).commit();
+        verify(conn).close();
+    }
+
+    @Test
+    @DbUnitTest(init="test.xml", operation=Operation.NONE)
+    public void evaluate_shared_connection_exception_occured_at_test_method() throws Throwable {
+        final Exception failureCause = new Exception("test error");
+        Connection conn = mock(Connection.class);
+
+        DbUnitRunner runner = new DbUnitRunner(getClass());
+        runner.shareConnection = true;
+        runner.testConnection = conn;
+        try {
+            runner.new DbUnitStatement(getAnnotation(), new Statement() {
+                public void evaluate() throws Throwable {
+                    throw failureCause;
+                }
+            }).evaluate();
+            fail("Expecting Exception");
+        } catch (Exception e) {
+            assertSame(failureCause, e);
+        }
+        verify(conn).commit();
+        verify(conn).rollback();
+        verify(conn).close();
+    }
+
     @Test
     @DbUnitTest(init="test.xml", expected="test.xml", operation=Operation.NONE)
     public void evaluate_assert_tables_failure() throws Throwable {
@@ -332,8 +633,7 @@ public class DbUnitRunnerTest {
     public void assertTables_success() throws Throwable {
         IDataSet dataSet = new FlatXmlDataSet(
             new FlatXmlProducer(new InputSource(getClass().getResourceAsStream("test.xml"))));
-        final IDatabaseConnection conn = mock(IDatabaseConnection.class);
-        when(conn.createDataSet((String[]) anyObject())).thenReturn(dataSet);
+        final IDatabaseConnection conn = mockConnection(dataSet);
 
         new DbUnitRunner(getClass()).new DbUnitStatement(getAnnotation(), null) {
             protected IDatabaseConnection createDatabaseConnection() {
@@ -342,6 +642,9 @@ public class DbUnitRunnerTest {
         }.assertTables();
 
         verify(conn).createDataSet((String[]) anyObject());
+        verify(conn).getConfig();
+        verify(conn).getSchema();
+        verify(conn).createQueryTable("emp", "select empno, ename, job, mgr, hiredate, sal, comm, deptno from emp");
         verify(conn).close();
         verifyNoMoreInteractions(conn);
     }
@@ -351,8 +654,7 @@ public class DbUnitRunnerTest {
     public void assertTables_failure() throws Throwable {
         IDataSet dataSet = new FlatXmlDataSet(
             new FlatXmlProducer(new InputSource(getClass().getResourceAsStream("test.xml"))));
-        final IDatabaseConnection conn = mock(IDatabaseConnection.class);
-        when(conn.createDataSet((String[]) anyObject())).thenReturn(dataSet);
+        final IDatabaseConnection conn = mockConnection(dataSet);
 
         DbUnitRunner runner = new DbUnitRunner(getClass());
         runner.new DbUnitStatement(getAnnotation(), null) {
@@ -392,10 +694,9 @@ public class DbUnitRunnerTest {
         DataSetException failureCause = new DataSetException("failure");
 
         IDataSet dataSet = mock(IDataSet.class);
-        when(dataSet.getTableNames()).thenThrow(failureCause);
+        when(dataSet.getTableMetaData("emp")).thenThrow(failureCause);
 
-        final IDatabaseConnection conn = mock(IDatabaseConnection.class);
-        when(conn.createDataSet((String[]) anyObject())).thenReturn(dataSet);
+        final IDatabaseConnection conn = mockConnection(dataSet);
 
         DbUnitRunner runner = new DbUnitRunner(getClass());
         try {
@@ -417,8 +718,7 @@ public class DbUnitRunnerTest {
         IDataSet dataSet = new FlatXmlDataSet(
             new FlatXmlProducer(new InputSource(getClass().getResourceAsStream("test.xml"))));
 
-        final IDatabaseConnection conn = mock(IDatabaseConnection.class);
-        when(conn.createDataSet((String[]) anyObject())).thenReturn(dataSet);
+        final IDatabaseConnection conn = mockConnection(dataSet);
         doThrow(closeFailure).when(conn).close();
 
         DbUnitRunner runner = new DbUnitRunner(getClass());
@@ -452,11 +752,130 @@ public class DbUnitRunnerTest {
         }
     }
 
+    @Test
+    @DbUnitTest(init="", expected="test.xml", excludeColumns={"job", "emp.mgr"})
+    public void assertTables_exclude_columns() throws Throwable {
+        IDataSet dataSet = new FlatXmlDataSet(
+            new FlatXmlProducer(new InputSource(getClass().getResourceAsStream("test.xml"))));
+        final IDatabaseConnection conn = mockConnection(dataSet);
+        when(conn.createQueryTable(eq("emp"), anyString())).thenReturn(
+            DefaultColumnFilter.excludedColumnsTable(dataSet.getTable("emp"), new String[] {"job", "mgr"}));
+
+        new DbUnitRunner(getClass()).new DbUnitStatement(getAnnotation(), null) {
+            protected IDatabaseConnection createDatabaseConnection() {
+                return conn;
+            }
+        }.assertTables();
+
+        verify(conn).createQueryTable("emp", "select empno, ename, hiredate, sal, comm, deptno from emp");
+    }
+
+    @Test
+    @DbUnitTest(init="sample/bonus.xml", expected="sample/bonus.xml")
+    public void assertTables_concurrently() throws Throwable {
+        DbUnitRunner runner = new DbUnitRunner(getClass());
+        runner.assertThreads = 2;
+        runner.dataSource = runner.createDataSource();
+        try {
+            runner.new DbUnitStatement(getAnnotation(), mockStatement()).evaluate();
+            assertNotNull(runner.assertExecutor);
+        } finally {
+            runner.shutdownAssertExecutor();
+            runner.closeDataSource();
+        }
+        assertNull(runner.assertExecutor);
+    }
+
+    @Test
+    @DbUnitTest(init="sample/bonus.xml", expected="sample/bonus.xml")
+    public void assertTables_concurrently_failure() throws Throwable {
+        final DbUnitRunner runner = new DbUnitRunner(getClass());
+        runner.assertThreads = 2;
+        runner.dataSource = runner.createDataSource();
+        try {
+            runner.new DbUnitStatement(getAnnotation(), new Statement() {
+                public void evaluate() throws Throwable {
+                    Connection conn = runner.dataSource.getConnection();
+                    try {
+                        conn.createStatement().executeUpdate("delete from bonus where bonusno = 20");
+                        conn.createStatement().executeUpdate("delete from emp where empno = 7499");
+                    } finally {
+                        conn.close();
+                    }
+                }
+            }).evaluate();
+            fail("Expecting AssertionError");
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("2 tables failed:\n[emp] "));
+            assertTrue(e.getMessage(), e.getMessage().contains("\n[bonus] "));
+        } finally {
+            runner.shutdownAssertExecutor();
+            runner.closeDataSource();
+        }
+    }
+
     @Test
     public void createDatabaseConnection() throws InitializationError {
         assertNotNull(new DbUnitRunner(getClass()).new DbUnitStatement(null, null).createDatabaseConnection());
     }
 
+    @Test
+    public void createDatabaseConnection_shared() throws Exception {
+        Connection conn = mock(Connection.class);
+        DbUnitRunner runner = new DbUnitRunner(getClass());
+        runner.shareConnection = true;
+        runner.testConnection = conn;
+        IDatabaseConnection connection = runner.new DbUnitStatement(null, null).createDatabaseConnection();
+        assertSame(conn, connection.getConnection());
+        connection.close();
+        verify(conn, never()).close();
+    }
+
+    @Test
+    public void createTest_shared_connection() throws Exception {
+        final Connection conn = mock(Connection.class);
+        final DataSource ds = mock(DataSource.class);
+        when(ds.getConnection()).thenReturn(conn);
+        DbUnitRunner runner = new DbUnitRunner(getClass()) {
+            protected DataSource createDataSource() {
+                return ds;
+            }
+        };
+        runner.shareConnection = true;
+        DbUnitRunnerTest test = (DbUnitRunnerTest) runner.createTest();
+
+        assertSame(conn, test.privateConnectionWithAnnotation);
+        verify(ds).getConnection();
+        verify(conn).setAutoCommit(false);
+    }
+
+    @Test
+    public void methodBlock_releases_shared_connection() throws Throwable {
+        DbUnitRunner runner = new DbUnitRunner(PlainTestCase.class);
+        runner.shareConnection = true;
+        FrameworkMethod method = new FrameworkMethod(PlainTestCase.class.getMethod("test"));
+        try {
+            for (int i = 0; i < 3; i++) {
+                runner.methodBlock(method).evaluate();
+                assertNull(runner.testConnection);
+            }
+            assertEquals(0, ((BasicDataSource) runner.dataSource).getNumActive());
+        } finally {
+            runner.closeDataSource();
+        }
+    }
+
+    public static class PlainTestCase {
+
+        @TestConnection
+        private Connection conn;
+
+        @Test
+        public void test() throws SQLException {
+            assertFalse(conn.getAutoCommit());
+        }
+    }
+
     @Test
     public void createDatabaseConnection_with_boolean_Property() throws InitializationError {
         Properties properties = new Properties();
@@ -494,6 +913,12 @@ public class DbUnitRunnerTest {
         assertNull(DbUnitRunner.optionalValue(bundle, "key"));
     }
 
+    @Test
+    public void optionalValue_default() throws IOException {
+        ResourceBundle bundle = new PropertyResourceBundle(new StringReader(""));
+        assertEquals("default", DbUnitRunner.optionalValue(bundle, "key", "default"));
+    }
+
     @Test
     public void executeUpdate() throws InitializationError, SQLException {
         DbUnitRunner runner = new DbUnitRunner(getClass());
@@ -527,6 +952,54 @@ public class DbUnitRunnerTest {
         runner.new DbUnitStatement(null, null).executeUpdate(dbc, "update ...");
     }
 
+    @Test
+    public void executeBatch() throws InitializationError, SQLException {
+        DbUnitRunner runner = new DbUnitRunner(getClass());
+        java.sql.Statement stmt = mock(java.sql.Statement.class);
+        Connection conn = mock(Connection.class);
+        IDatabaseConnection dbc = mock(IDatabaseConnection.class);
+        when(dbc.getConnection()).thenReturn(conn);
+        when(conn.createStatement()).thenReturn(stmt);
+        runner.new DbUnitStatement(null, null).executeBatch(dbc, "update ...", "", "insert ...");
+        verify(stmt).addBatch("update ...");
+        verify(stmt).addBatch("insert ...");
+        verify(stmt).executeBatch();
+        verify(stmt).close();
+        verifyNoMoreInteractions(stmt);
+    }
+
+    @Test
+    public void executeBatch_empty() throws InitializationError, SQLException {
+        DbUnitRunner runner = new DbUnitRunner(getClass());
+        IDatabaseConnection dbc = mock(IDatabaseConnection.class);
+        runner.new DbUnitStatement(null, null).executeBatch(dbc, "");
+        verifyNoMoreInteractions(dbc);
+    }
+
+    @Test(expected=SQLException.class)
+    public void executeBatch_error() throws InitializationError, SQLException {
+        DbUnitRunner runner = new DbUnitRunner(getClass());
+        java.sql.Statement stmt = mock(java.sql.Statement.class);
+        Connection conn = mock(Connection.class);
+        IDatabaseConnection dbc = mock(IDatabaseConnection.class);
+        when(dbc.getConnection()).thenReturn(conn);
+        when(conn.createStatement()).thenReturn(stmt);
+        when(stmt.executeBatch()).thenThrow(new SQLException());
+        try {
+            runner.new DbUnitStatement(null, null).executeBatch(dbc, "update ...");
+        } finally {
+            verify(stmt).close();
+        }
+    }
+
+    @Test
+    @DbUnitTest(init="test.xml", sqlScript="sample/setup.sql", sql="update ...")
+    public void sqlStatements() throws InitializationError {
+        String[] actual = new DbUnitRunner(getClass()).new DbUnitStatement(getAnnotation(), null).sqlStatements();
+        assertEquals(Arrays.asList("DELETE FROM dept", "ALTER SEQUENCE my_seq RESTART WITH 200", "update ..."),
+            Arrays.asList(actual));
+    }
+
     private Method getMethod() {
         return getMethod(2);
     }
@@ -543,6 +1016,16 @@ public class DbUnitRunnerTest {
         return getMethod(2).getAnnotation(DbUnitTest.class);
     }
 
+    private IDatabaseConnection mockConnection(IDataSet dataSet) throws Exception {
+        IDatabaseConnection conn = mock(IDatabaseConnection.class);
+        when(conn.createDataSet((String[]) anyObject())).thenReturn(dataSet);
+        when(conn.getConfig()).thenReturn(new DatabaseConfig());
+        if (dataSet instanceof FlatXmlDataSet) {
+            when(conn.createQueryTable(eq("emp"), anyString())).thenReturn(dataSet.getTable("emp"));
+        }
+        return conn;
+    }
+
     private Statement mockStatement() {
         return new Statement() {
             public void evaluate() throws Throwable {}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+public class DialectTest {
+
+    @Test
+    public void of() throws SQLException {
+        assertEquals(Dialect.H2, Dialect.of(connection("H2")));
+        assertEquals(Dialect.MYSQL, Dialect.of(connection("MySQL")));
+        assertEquals(Dialect.POSTGRESQL, Dialect.of(connection("PostgreSQL")));
+        assertEquals(Dialect.STANDARD, Dialect.of(connection("Apache Derby")));
+    }
+
+    @Test
+    public void restartSequence() {
+        assertEquals("ALTER SEQUENCE my_seq RESTART WITH 100", Dialect.H2.restartSequence("my_seq", 100));
+    }
+
+    @Test
+    public void restartIdentity() {
+        assertEquals("ALTER TABLE emp ALTER COLUMN empno RESTART WITH 100",
+            Dialect.H2.restartIdentity("emp", "empno", 100));
+        assertEquals("ALTER TABLE emp AUTO_INCREMENT = 100",
+            Dialect.MYSQL.restartIdentity("emp", "empno", 100));
+    }
+
+    @Test
+    public void createTemporaryTable() {
+        assertEquals("CREATE LOCAL TEMPORARY TABLE t AS select * from emp",
+            Dialect.H2.createTemporaryTable("t", "select * from emp"));
+        assertEquals("CREATE TEMPORARY TABLE t AS select * from emp",
+            Dialect.MYSQL.createTemporaryTable("t", "select * from emp"));
+    }
+
+    @Test
+    public void except() {
+        assertEquals("EXCEPT", Dialect.POSTGRESQL.except());
+        assertNull(Dialect.MYSQL.except());
+    }
+
+    @Test
+    public void hexDigest() {
+        assertEquals("SHA-256", Dialect.H2.digestAlgorithm());
+        assertEquals("CAST(HASH('SHA256', STRINGTOUTF8(x), 1) AS VARCHAR)", Dialect.H2.hexDigest("x"));
+        assertNull(Dialect.STANDARD.hexDigest("x"));
+    }
+
+    private static Connection connection(String productName) throws SQLException {
+        Connection conn = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(conn.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn(productName);
+        return conn;
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFDataFormat;
+import org.apache.poi.hssf.usermodel.HSSFRichTextString;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.dbunit.Assertion;
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.excel.XlsDataSet;
+import org.junit.Test;
+
+public class ExcelProducerTest {
+
+    @Test
+    public void xls() throws Exception {
+        assertSameValues(readBytes(getClass().getResourceAsStream("test.xls")));
+    }
+
+    @Test
+    public void xls_cell_types() throws Exception {
+        HSSFWorkbook workbook = new HSSFWorkbook();
+        HSSFCellStyle dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(HSSFDataFormat.getBuiltinFormat("m/d/yy"));
+        HSSFSheet values = workbook.createSheet("values");
+        row(values, 0, "id", "name", "amount", "flag", "created", "note");
+        Object[][] rows = {
+            {1, "SMITH", 800, true, new Date(0), ""},
+            {2, "caf\u00e9", 0.1, false, null, null},
+            {-3, "", 1234.5678, null, new Date(1000000000000L), "x"},
+            {12345678901L, null, -0.0001, true},
+            {5}
+        };
+        for (int i = 0; i < rows.length; i++) {
+            HSSFRow row = values.createRow(i + 1);
+            for (int j = 0; j < rows[i].length; j++) {
+                Object value = rows[i][j];
+                if (value == null) {
+                    continue;
+                }
+                HSSFCell cell = row.createCell(j);
+                if (value instanceof String) {
+                    cell.setCellValue(new HSSFRichTextString((String) value));
+                } else if (value instanceof Boolean) {
+                    cell.setCellValue(((Boolean) value).booleanValue());
+                } else if (value instanceof Date) {
+                    cell.setCellValue((Date) value);
+                    cell.setCellStyle(dateStyle);
+                } else {
+                    cell.setCellValue(((Number) value).doubleValue());
+                }
+            }
+        }
+        row(workbook.createSheet("empty"), 0, "a", "b");
+        HSSFSheet sparse = workbook.createSheet("sparse");
+        row(sparse, 0, "a", "b", "c");
+        row(sparse, 1, "1", null, "3");
+        row(sparse, 2, null, "2");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        assertSameValues(out.toByteArray());
+    }
+
+    @Test
+    public void xlsx() throws Exception {
+        ITable emp = DataSetType.xlsx.createDataSet(getClass().getResource("test.xlsx")).getTable("emp");
+        assertEquals(3, emp.getRowCount());
+        assertEquals(8, emp.getTableMetaData().getColumns().length);
+        assertEquals(new BigDecimal(7369), emp.getValue(0, "empno"));
+        assertEquals("SMITH", emp.getValue(0, "ename"));
+        assertEquals("SALESMAN", emp.getValue(1, "job"));
+        assertEquals("WARD", emp.getValue(2, "ename"));
+        assertEquals(new BigDecimal(20), emp.getValue(0, "deptno"));
+        Date hiredate = new Date(((Long) emp.getValue(0, "hiredate")).longValue());
+        assertEquals("1980-12-17", new SimpleDateFormat("yyyy-MM-dd").format(hiredate));
+    }
+
+    @Test
+    public void columnIndex() {
+        assertEquals(0, XlsxProducer.columnIndex("A1"));
+        assertEquals(25, XlsxProducer.columnIndex("Z10"));
+        assertEquals(27, XlsxProducer.columnIndex("AB12"));
+    }
+
+    @Test
+    public void dataSetType() throws Exception {
+        assertEquals(DataSetType.xlsx, DataSetType.forPath("test.xlsx#emp"));
+        ITable emp = DataSetType.xls.createDataSet(getClass().getResource("test.xls")).getTable("emp");
+        assertNull(emp.getValue(0, "comm"));
+        Assertion.assertEquals(DataSetType.xls.createDataSet(getClass().getResource("test.xls")),
+            DataSetType.xlsevent.createDataSet(getClass().getResource("test.xls")));
+    }
+
+    private static void row(HSSFSheet sheet, int index, String... values) {
+        HSSFRow row = sheet.createRow(index);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                row.createCell(i).setCellValue(new HSSFRichTextString(values[i]));
+            }
+        }
+    }
+
+    private static byte[] readBytes(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void assertSameValues(byte[] xls) throws Exception {
+        IDataSet expected = new XlsDataSet(new ByteArrayInputStream(xls));
+        IDataSet actual = new CachedDataSet(new XlsProducer(new ByteArrayInputStream(xls)));
+        assertArrayEquals(expected.getTableNames(), actual.getTableNames());
+        for (String tableName : expected.getTableNames()) {
+            ITable expectedTable = expected.getTable(tableName);
+            ITable actualTable = actual.getTable(tableName);
+            Column[] columns = expectedTable.getTableMetaData().getColumns();
+            assertEquals(columns.length, actualTable.getTableMetaData().getColumns().length);
+            assertEquals(expectedTable.getRowCount(), actualTable.getRowCount());
+            for (int row = 0; row < expectedTable.getRowCount(); row++) {
+                for (Column column : columns) {
+                    assertEquals(tableName + "." + column.getColumnName() + "[" + row + "]",
+                        expectedTable.getValue(row, column.getColumnName()),
+                        actualTable.getValue(row, column.getColumnName()));
+                }
+            }
+        }
+    }
+}
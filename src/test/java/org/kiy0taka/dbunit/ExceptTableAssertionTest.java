@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+
+import org.dbunit.dataset.ITable;
+import org.junit.Test;
+import org.kiy0taka.dbunit.DbUnitTest.AssertMode;
+
+public class ExceptTableAssertionTest extends H2TestCase {
+
+    protected void createTables() throws SQLException {
+        stmt("create table emp (empno integer primary key, ename varchar(10), hiredate date, sal decimal(7,2))");
+        stmt("insert into emp values (1, 'SMITH', '1980-12-17', 800)");
+        stmt("insert into emp values (2, 'ALLEN  ', '1981-02-20', 1600.5)");
+        stmt("insert into emp values (3, 'WARD', null, 1250)");
+    }
+
+    @Test
+    @DbUnitTest(init="", rtrim=true)
+    public void assertTable() throws Exception {
+        assertExcept(2, "<emp empno='3' ename='WARD' sal='1250'/>"
+            + "<emp empno='1' ename='SMITH' hiredate='1980-12-17' sal='800'/>"
+            + "<emp empno='2' ename='ALLEN' hiredate='1981-02-20' sal='1600.50'/>");
+    }
+
+    @Test
+    @DbUnitTest(init="")
+    public void assertTable_columns() throws Exception {
+        assertExcept(2, "<emp empno='1'/><emp empno='2'/><emp empno='3'/>");
+    }
+
+    @Test
+    @DbUnitTest(init="")
+    public void assertTable_difference() throws Exception {
+        try {
+            assertExcept(2, "<emp empno='1' ename='SMITH'/><emp empno='2' ename='ALLEN'/>");
+            fail("Expecting AssertionError");
+        } catch (AssertionError e) {
+            assertEquals("table emp differs (expected rows:<2>, actual rows:<3>)"
+                + "\nmissing row: [2, ALLEN]"
+                + "\nunexpected row: [2, ALLEN  ]"
+                + "\nunexpected row: [3, WARD]", e.getMessage());
+        }
+    }
+
+    @Test
+    @DbUnitTest(init="")
+    public void assertTable_duplicate() throws Exception {
+        stmt("create table note (note varchar(10))");
+        stmt("insert into note values ('A')");
+        stmt("insert into note values ('A')");
+        try {
+            assertExcept(2, "<note note='A'/>");
+            fail("Expecting AssertionError");
+        } catch (AssertionError e) {
+            assertEquals("table note differs (expected rows:<1>, actual rows:<2>)"
+                + "\nmissing row: [A]"
+                + "\nunexpected row: [A] x2", e.getMessage());
+        }
+    }
+
+    @Test
+    @DbUnitTest(init="")
+    public void assertTable_duplicate_same_count() throws Exception {
+        stmt("create table note (note varchar(10))");
+        stmt("insert into note values ('A')");
+        stmt("insert into note values ('B')");
+        stmt("insert into note values ('B')");
+        try {
+            assertExcept(2, "<note note='A'/><note note='A'/><note note='B'/>");
+            fail("Expecting AssertionError");
+        } catch (AssertionError e) {
+            assertEquals("table note differs (expected rows:<3>, actual rows:<3>)"
+                + "\nmissing row: [A] x2"
+                + "\nmissing row: [B]"
+                + "\nunexpected row: [A]"
+                + "\nunexpected row: [B] x2", e.getMessage());
+        }
+    }
+
+    @Test
+    @DbUnitTest(init="")
+    public void assertTable_decimal_scale() throws Exception {
+        try {
+            assertExcept(2, "<emp empno='1' sal='800.004'/><emp empno='2' sal='1600.50'/><emp empno='3' sal='1250'/>");
+            fail("Expecting AssertionError");
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("value (table=emp, row=0, col=sal"));
+        }
+    }
+
+    @Test
+    @DbUnitTest(init="")
+    public void assertTable_temporary_table_dropped() throws Exception {
+        assertExcept(2, "<emp empno='1'/><emp empno='2'/><emp empno='3'/>");
+        assertExcept(2, "<emp empno='1'/><emp empno='2'/><emp empno='3'/>");
+    }
+
+    @Test
+    @DbUnitTest(init="", assertMode=AssertMode.EXCEPT)
+    public void toTableAssertion() {
+        assertTrue(getAnnotation().assertMode().toTableAssertion() instanceof ExceptTableAssertion);
+    }
+
+    private void assertExcept(int batchSize, String rows) throws Exception {
+        ITable expected = table(rows);
+        String tableName = expected.getTableMetaData().getTableName();
+        new ExceptTableAssertion(batchSize).assertTable(connection,
+            connection.createDataSet().getTableMetaData(tableName), expected, getAnnotation());
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.sql.SQLException;
+
+import org.dbunit.dataset.ITable;
+import org.junit.Test;
+import org.kiy0taka.dbunit.DbUnitTest.AssertMode;
+import org.kiy0taka.dbunit.DbUnitTest.Sort;
+
+public class ExternalSortTableAssertionTest extends H2TestCase {
+
+    private static final String EXPECTED = "<audit id='3' action='UPDATE' amount='10.5'/>"
+        + "<audit id='1' action='INSERT' amount='100'/>"
+        + "<audit id='2' action='DELETE'/>"
+        + "<audit id='1' action='INSERT' amount='100'/>"
+        + "<audit id='10' action='UPDATE' amount='7'/>";
+
+    protected void createTables() throws SQLException {
+        stmt("create table audit (id integer, action varchar(10), amount decimal(7,2))");
+        stmt("insert into audit values (10, 'UPDATE', 7)");
+        stmt("insert into audit values (1, 'INSERT', 100)");
+        stmt("insert into audit values (2, 'DELETE', null)");
+        stmt("insert into audit values (3, 'UPDATE  ', 10.5)");
+        stmt("insert into audit values (1, 'INSERT', 100)");
+    }
+
+    @Test
+    @DbUnitTest(init="", rtrim=true, sortBufferRows=2)
+    public void assertTable_merge() throws Exception {
+        int runFiles = runFiles();
+        assertExternalSort(EXPECTED);
+        assertEquals(runFiles, runFiles());
+    }
+
+    @Test
+    @DbUnitTest(init="", rtrim=true)
+    public void assertTable_in_memory() throws Exception {
+        assertExternalSort(EXPECTED);
+    }
+
+    @Test
+    @DbUnitTest(init="", sortBufferRows=2)
+    public void assertTable_difference() throws Exception {
+        int runFiles = runFiles();
+        try {
+            assertExternalSort(EXPECTED);
+            fail("Expecting AssertionError");
+        } catch (AssertionError e) {
+            assertEquals("row (table=audit, sorted row=3) expected:<[3, UPDATE, 10.5]> but was:<[3, UPDATE  , 10.50]>",
+                e.getMessage());
+        }
+        assertEquals(runFiles, runFiles());
+    }
+
+    @Test
+    @DbUnitTest(init="", rtrim=true, sortBufferRows=2)
+    public void assertTable_row_count() throws Exception {
+        stmt("insert into audit values (11, 'INSERT', 1)");
+        try {
+            assertExternalSort(EXPECTED);
+            fail("Expecting AssertionError");
+        } catch (AssertionError e) {
+            assertEquals("row count (table=audit) expected:<5> but was:<6>", e.getMessage());
+        }
+    }
+
+    @Test(expected=AssertionError.class)
+    @DbUnitTest(init="", rtrim=true, sort=Sort.NONE)
+    public void assertTable_no_sort() throws Exception {
+        assertExternalSort(EXPECTED);
+    }
+
+    @Test
+    @DbUnitTest(init="", rtrim=true, sort=Sort.NONE)
+    public void assertTable_no_sort_database_order() throws Exception {
+        assertExternalSort("<audit id='10' action='UPDATE' amount='7'/>"
+            + "<audit id='1' action='INSERT' amount='100'/>"
+            + "<audit id='2' action='DELETE'/>"
+            + "<audit id='3' action='UPDATE' amount='10.5'/>"
+            + "<audit id='1' action='INSERT' amount='100'/>");
+    }
+
+    @Test
+    @DbUnitTest(init="", assertMode=AssertMode.EXTERNAL_SORT)
+    public void toTableAssertion() {
+        assertTrue(getAnnotation().assertMode().toTableAssertion() instanceof ExternalSortTableAssertion);
+    }
+
+    private void assertExternalSort(String rows) throws Exception {
+        ITable expected = table(rows);
+        String tableName = expected.getTableMetaData().getTableName();
+        new ExternalSortTableAssertion().assertTable(connection,
+            connection.createDataSet().getTableMetaData(tableName), expected, getAnnotation());
+    }
+
+    private static int runFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith("dbunit") && name.endsWith(".run");
+            }
+        });
+        return files.length;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FixtureCacheTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("fixture-cache", "");
+        dir.delete();
+        dir.deleteOnExit();
+    }
+
+    @Test
+    public void get() throws Exception {
+        for (String path : new String[] {"indexed.xml", "test.xls", "test.xlsx", "emp_with_nullvalue.xml"}) {
+            URL url = getClass().getResource(path);
+            DataSetType type = DataSetType.forPath(path);
+            IDataSet expected = type.createDataSet(url);
+            FixtureCache cache = new FixtureCache(dir);
+            IDataSet actual = cache.get(path, url, type, loader(url, type, new AtomicInteger()));
+            assertSame(actual, cache.get(path, url, type, null));
+            assertEquals(expected, actual);
+        }
+        File[] files = dir.listFiles();
+        assertEquals(8, files.length);
+        for (File file : files) {
+            assertTrue(file.getName(), file.getName().endsWith(".dataset") || file.getName().endsWith(".lock"));
+            if (file.getName().endsWith(".dataset")) {
+                assertTrue(FixtureCache.map(file).getTableNames().length > 0);
+            }
+        }
+    }
+
+    @Test
+    public void get_concurrent() throws Exception {
+        final URL url = getClass().getResource("indexed.xml");
+        final AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<IDataSet>> futures = new ArrayList<Future<IDataSet>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<IDataSet>() {
+                    public IDataSet call() {
+                        return new FixtureCache(dir).get("indexed.xml", url, DataSetType.xml,
+                            loader(url, DataSetType.xml, loads));
+                    }
+                }));
+            }
+            IDataSet expected = DataSetType.xml.createDataSet(url);
+            for (Future<IDataSet> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void get_not_cacheable() throws Exception {
+        File file = File.createTempFile("date", ".xml");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write("<dataset/>".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        DefaultTable table = new DefaultTable("emp", new Column[] {new Column("hiredate", DataType.UNKNOWN)});
+        table.addRow(new Object[] {Date.valueOf("1980-12-17")});
+        final IDataSet dataSet = new DefaultDataSet(table);
+        DataSetPrefetcher.Loader loader = new DataSetPrefetcher.Loader() {
+            public IDataSet load(String path) {
+                return dataSet;
+            }
+        };
+        URL url = file.toURI().toURL();
+        assertSame(dataSet, new FixtureCache(dir).get("date.xml", url, DataSetType.xml, loader));
+        assertSame(dataSet, new FixtureCache(dir).get("date.xml", url, DataSetType.xml, loader));
+        for (File cacheFile : dir.listFiles()) {
+            assertFalse(cacheFile.getName(), cacheFile.getName().endsWith(".dataset"));
+        }
+    }
+
+    private static DataSetPrefetcher.Loader loader(final URL url, final DataSetType type, final AtomicInteger loads) {
+        return new DataSetPrefetcher.Loader() {
+            public IDataSet load(String path) {
+                loads.incrementAndGet();
+                try {
+                    return type.createDataSet(url);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    private static void assertEquals(IDataSet expected, IDataSet actual) throws DataSetException {
+        assertArrayEquals(expected.getTableNames(), actual.getTableNames());
+        for (String tableName : expected.getTableNames()) {
+            ITable expectedTable = expected.getTable(tableName);
+            ITable actualTable = actual.getTable(tableName);
+            Column[] columns = expectedTable.getTableMetaData().getColumns();
+            assertEquals(columns.length, actualTable.getTableMetaData().getColumns().length);
+            assertEquals(expectedTable.getRowCount(), actualTable.getRowCount());
+            for (int row = 0; row < expectedTable.getRowCount(); row++) {
+                for (Column column : columns) {
+                    assertEquals(expectedTable.getValue(row, column.getColumnName()),
+                        actualTable.getValue(row, column.getColumnName()));
+                }
+            }
+        }
+    }
+
+    private static void assertEquals(Object expected, Object actual) {
+        org.junit.Assert.assertEquals(expected, actual);
+    }
+}
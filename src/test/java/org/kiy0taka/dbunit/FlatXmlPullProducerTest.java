@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.xml.FlatXmlDataSet;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+public class FlatXmlPullProducerTest {
+
+    @Test
+    public void same_as_sax() throws Exception {
+        for (String path : new String[] {"test.xml", "indexed.xml", "emp_with_nullvalue.xml",
+            "sample/emp.xml", "sample/bonus.xml", "sample/emp_with_null.xml"}) {
+
+            URL url = getClass().getResource(path);
+            assertSame(new FlatXmlDataSet(new FlatXmlProducer(new InputSource(url.openStream()))),
+                new CachedDataSet(new FlatXmlPullProducer(url)));
+        }
+    }
+
+    @Test
+    public void same_as_sax_syntax() throws Exception {
+        String xml = "<?xml version='1.0' encoding='UTF-8'?>\n<!-- comment -->\n<dataset a='1'>\n"
+            + "  <emp empno=\"1\" ename='A &amp; B &lt;&gt;&quot;&apos;' job='&#65;&#x42;\u3042'/>\n"
+            + "  <!-- <emp empno='9'/> -->\n"
+            + "  <emp job='x\ty\r\nz' empno = '2' ></emp>\n"
+            + "  <?pi data?>\n"
+            + "  <emp empno='3' unknown='x'/>\n"
+            + "  <dept/>\n"
+            + "  <DEPT deptno='10'/>\n"
+            + "  <emp empno='4'/><![CDATA[ <emp empno='8'/> ]]>\n"
+            + "</dataset>\n<!-- end -->\n";
+        assertSame(sax(xml), pull(xml));
+        ITable emp = pull(xml).getTable("emp");
+        assertEquals(4, emp.getRowCount());
+        assertEquals("A & B <>\"'", emp.getValue(0, "ename"));
+        assertEquals("AB\u3042", emp.getValue(0, "job"));
+        assertEquals("x y z", emp.getValue(1, "job"));
+        assertNull(emp.getValue(2, "job"));
+        assertEquals(0, pull(xml).getTable("dept").getTableMetaData().getColumns().length);
+    }
+
+    @Test
+    public void encoding() throws Exception {
+        String xml = "<?xml version='1.0' encoding='%s'?><dataset><emp ename='\u3042\u3044'/></dataset>";
+        for (String charset : new String[] {"UTF-8", "Shift_JIS", "EUC-JP", "UTF-16"}) {
+            byte[] bytes = String.format(xml, charset).getBytes(charset);
+            IDataSet dataSet = new CachedDataSet(new FlatXmlPullProducer(new ByteArrayInputStream(bytes)));
+            assertEquals(charset, "\u3042\u3044", dataSet.getTable("emp").getValue(0, "ename"));
+        }
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        byte[] bytes = "<dataset><emp ename='\u3042'/></dataset>".getBytes("UTF-8");
+        byte[] withBom = new byte[bom.length + bytes.length];
+        System.arraycopy(bom, 0, withBom, 0, bom.length);
+        System.arraycopy(bytes, 0, withBom, bom.length, bytes.length);
+        IDataSet dataSet = new CachedDataSet(new FlatXmlPullProducer(new ByteArrayInputStream(withBom)));
+        assertEquals("\u3042", dataSet.getTable("emp").getValue(0, "ename"));
+    }
+
+    @Test
+    public void doctype() throws Exception {
+        File file = File.createTempFile("doctype", ".xml");
+        file.deleteOnExit();
+        write(file, "<?xml version='1.0'?>\n<!DOCTYPE dataset [\n"
+            + "<!ELEMENT dataset (emp*)>\n<!ELEMENT emp EMPTY>\n"
+            + "<!ATTLIST emp empno CDATA #REQUIRED ename CDATA #IMPLIED>\n]>\n"
+            + "<dataset><emp empno='1'/><emp empno='2' ename='B'/></dataset>");
+        URL url = file.toURI().toURL();
+        IDataSet dataSet = new CachedDataSet(new FlatXmlPullProducer(url));
+        assertSame(new FlatXmlDataSet(new FlatXmlProducer(new InputSource(url.openStream()))), dataSet);
+        assertEquals(2, dataSet.getTableMetaData("emp").getColumns().length);
+        assertEquals("B", dataSet.getTable("emp").getValue(1, "ename"));
+    }
+
+    @Test
+    public void invalid() throws Exception {
+        for (String xml : new String[] {
+            "<dataset><emp empno='1'></dept></dataset>",
+            "<dataset><emp empno='1' ename='&foo;'/></dataset>",
+            "<dataset><emp empno=1/></dataset>",
+            "<dataset><emp empno='<'/></dataset>",
+            "<dataset><emp empno='1'/>",
+            "<table><emp empno='1'/></table>",
+            "<dataset/><dataset/>"}) {
+
+            try {
+                pull(xml);
+                fail(xml);
+            } catch (DataSetException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("line 1"));
+            }
+        }
+    }
+
+    @Test
+    public void dataSetType() throws Exception {
+        URL url = getClass().getResource("indexed.xml");
+        assertSame(DataSetType.xml.createDataSet(url), DataSetType.xmlpull.createDataSet(url));
+        String[] tableNames = {"emp", "bonus"};
+        IDataSet dataSet = DataSetType.xmlpull.createDataSet(url, tableNames);
+        assertArrayEquals(tableNames, dataSet.getTableNames());
+        assertSame(DataSetType.xml.createDataSet(url, tableNames), dataSet);
+    }
+
+    private static IDataSet sax(String xml) throws Exception {
+        InputSource source = new InputSource(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        return new FlatXmlDataSet(new FlatXmlProducer(source));
+    }
+
+    private static IDataSet pull(String xml) throws Exception {
+        return new CachedDataSet(new FlatXmlPullProducer(new ByteArrayInputStream(xml.getBytes("UTF-8"))));
+    }
+
+    private static void write(File file, String content) throws Exception {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void assertSame(IDataSet expected, IDataSet actual) throws Exception {
+        assertArrayEquals(expected.getTableNames(), actual.getTableNames());
+        for (String tableName : expected.getTableNames()) {
+            ITable expectedTable = expected.getTable(tableName);
+            ITable actualTable = actual.getTable(tableName);
+            Column[] columns = expectedTable.getTableMetaData().getColumns();
+            assertEquals(Arrays.toString(columns), Arrays.toString(actualTable.getTableMetaData().getColumns()));
+            assertEquals(tableName, expectedTable.getRowCount(), actualTable.getRowCount());
+            for (int row = 0; row < expectedTable.getRowCount(); row++) {
+                for (Column column : columns) {
+                    assertEquals(expectedTable.getValue(row, column.getColumnName()),
+                        actualTable.getValue(row, column.getColumnName()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.junit.Test;
+
+public class GeneratedDataSetTest {
+
+    private static final String DESCRIPTOR = "# comment\n"
+        + "emp.rows=1000000\n"
+        + "emp.seed=42\n"
+        + "emp.empno=sequence(1)\n"
+        + "emp.ename=format(EMP%06d)\n"
+        + "emp.job=pick(CLERK, SALESMAN, MANAGER)\n"
+        + "emp.hiredate=date(1980-01-01,1980-01-31)\n"
+        + "emp.sal=range(800.00,5000.00)\n"
+        + "emp.comm=null\n"
+        + "emp.deptno=cycle(10,20,30)\n"
+        + "\n"
+        + "dept.rows=3\n"
+        + "dept.deptno=sequence(10,10)\n"
+        + "dept.mgr=range(1,3)\n"
+        + "dept.loc=value(NEW YORK)\n";
+
+    @Test
+    public void values() throws Exception {
+        IDataSet dataSet = dataSet(DESCRIPTOR);
+        assertArrayEquals(new String[] {"emp", "dept"}, dataSet.getTableNames());
+        ITable emp = dataSet.getTable("emp");
+        assertEquals(1000000, emp.getRowCount());
+        assertEquals(7, emp.getTableMetaData().getColumns().length);
+        assertEquals(1L, emp.getValue(0, "empno"));
+        assertEquals(1000000L, emp.getValue(999999, "empno"));
+        assertEquals("EMP000001", emp.getValue(0, "ename"));
+        assertNull(emp.getValue(5, "comm"));
+        assertEquals("30", emp.getValue(999998, "deptno"));
+        Set<Object> jobs = new HashSet<Object>();
+        Set<Object> hiredates = new HashSet<Object>();
+        for (int row = 0; row < 1000; row++) {
+            jobs.add(emp.getValue(row, "job"));
+            Date hiredate = (Date) emp.getValue(row, "hiredate");
+            assertTrue(hiredate.toString(), hiredate.toString().startsWith("1980-01-"));
+            hiredates.add(hiredate);
+            BigDecimal sal = (BigDecimal) emp.getValue(row, "sal");
+            assertEquals(2, sal.scale());
+            assertTrue(sal.toString(), sal.compareTo(new BigDecimal(800)) >= 0);
+            assertTrue(sal.toString(), sal.compareTo(new BigDecimal(5000)) <= 0);
+        }
+        assertEquals(new HashSet<Object>(Arrays.asList("CLERK", "SALESMAN", "MANAGER")), jobs);
+        assertEquals(31, hiredates.size());
+        ITable dept = dataSet.getTable("dept");
+        assertEquals(30L, dept.getValue(2, "deptno"));
+        assertEquals("NEW YORK", dept.getValue(0, "loc"));
+    }
+
+    @Test
+    public void values_repeatable() throws Exception {
+        ITable emp1 = dataSet(DESCRIPTOR).getTable("emp");
+        ITable emp2 = dataSet(DESCRIPTOR).getTable("emp");
+        ITable emp3 = dataSet(DESCRIPTOR.replace("seed=42", "seed=43")).getTable("emp");
+        boolean different = false;
+        for (int row = 500000; row < 500100; row++) {
+            assertEquals(emp1.getValue(row, "sal"), emp2.getValue(row, "sal"));
+            different |= !emp1.getValue(row, "sal").equals(emp3.getValue(row, "sal"));
+        }
+        assertTrue(different);
+        assertFalse(emp1.getValue(0, "sal").equals(emp1.getValue(0, "hiredate")));
+    }
+
+    @Test
+    public void invalid() throws Exception {
+        for (String descriptor : new String[] {
+            "emp.empno=sequence(1)\n",
+            "emp.rows=x\n",
+            "emp\n",
+            "emp.rows=1\nemp.empno=sequence()\n",
+            "emp.rows=1\nemp.empno=unknown(1)\n",
+            "emp.rows=1\nemp.sal=range(10,1)\n",
+            "emp.rows=1\nemp.ename=format(%d %d)\n"}) {
+
+            try {
+                dataSet(descriptor);
+                fail(descriptor);
+            } catch (DataSetException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("emp") || e.getMessage().contains("line"));
+            }
+        }
+    }
+
+    @Test
+    public void dataSetType() throws Exception {
+        IDataSet dataSet = DataSetType.gen.createDataSet(getClass().getResource("sample/emp.gen"));
+        assertEquals(1000, dataSet.getTable("emp").getRowCount());
+        assertEquals("7839", dataSet.getTable("emp").getValue(999, "mgr"));
+    }
+
+    private static IDataSet dataSet(String descriptor) throws Exception {
+        return new GeneratedDataSet(new StringReader(descriptor));
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.xml.FlatXmlDataSet;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.junit.After;
+import org.junit.Before;
+import org.xml.sax.InputSource;
+
+/**
+ * Test case on an in-memory H2 database named by the test class.
+ * @author kiy0taka
+ */
+abstract class H2TestCase {
+
+    protected Connection conn;
+
+    protected IDatabaseConnection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:" + getClass().getSimpleName());
+        createTables();
+        connection = new DatabaseConnection(conn);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    /**
+     * Create and fill tables of the test.
+     * @throws SQLException SQL error
+     */
+    protected abstract void createTables() throws SQLException;
+
+    protected void stmt(String sql) throws SQLException {
+        Statement stmt = conn.createStatement();
+        try {
+            stmt.execute(sql);
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Table of flat XML rows.
+     * @param rows rows of a table (i.e. "&lt;emp empno='1'/&gt;")
+     * @return table
+     * @throws DataSetException DbUnit error
+     */
+    protected static ITable table(String rows) throws DataSetException {
+        FlatXmlDataSet dataSet = new FlatXmlDataSet(new FlatXmlProducer(new InputSource(new StringReader(
+            "<dataset>" + rows + "</dataset>"))));
+        return dataSet.getTable(dataSet.getTableNames()[0]);
+    }
+
+    /**
+     * Annotation of the calling test method.
+     * @return annotation
+     */
+    protected DbUnitTest getAnnotation() {
+        for (StackTraceElement e : new Throwable().getStackTrace()) {
+            try {
+                Method method = getClass().getMethod(e.getMethodName());
+                if (method.isAnnotationPresent(DbUnitTest.class)) {
+                    return method.getAnnotation(DbUnitTest.class);
+                }
+            } catch (NoSuchMethodException ignore) {
+                // NOP
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+
+import org.dbunit.Assertion;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.NoSuchTableException;
+import org.dbunit.dataset.xml.FlatXmlDataSet;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.junit.Test;
+import org.junit.runners.model.TestClass;
+import org.xml.sax.InputSource;
+
+public class IndexedFlatXmlDataSetTest {
+
+    private URL url = getClass().getResource("indexed.xml");
+
+    @Test
+    public void index() throws Exception {
+        FlatXmlIndex index = FlatXmlIndex.forUrl(url);
+        assertSame(index, FlatXmlIndex.forUrl(url));
+        assertTrue(index.isIndexable());
+        assertEquals("[dept, emp, bonus]", index.getTableNames().toString());
+        assertEquals(2, index.getSegments("DEPT").size());
+        assertEquals(2, index.getSegments("emp").size());
+        assertEquals(1, index.getSegments("bonus").size());
+    }
+
+    @Test(expected=DataSetException.class)
+    public void index_invalid() throws Exception {
+        FlatXmlIndex.forUrl(getClass().getResource("invalid.xml"));
+    }
+
+    @Test
+    public void all() throws Exception {
+        IDataSet expected = new FlatXmlDataSet(new FlatXmlProducer(new InputSource(url.openStream())));
+        IndexedFlatXmlDataSet actual = new IndexedFlatXmlDataSet(url);
+        assertArrayEquals(expected.getTableNames(), actual.getTableNames());
+        Assertion.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void subset() throws Exception {
+        IDataSet expected = new FlatXmlDataSet(new FlatXmlProducer(new InputSource(url.openStream())));
+        IndexedFlatXmlDataSet actual = new IndexedFlatXmlDataSet(url, new String[] {"EMP", "dept"});
+        assertArrayEquals(new String[] {"EMP", "dept"}, actual.getTableNames());
+        ITable emp = actual.getTable("emp");
+        assertSame(emp, actual.getTable("EMP"));
+        Assertion.assertEquals(expected.getTable("emp"), emp);
+        assertEquals("ALLEN>", emp.getValue(1, "ename"));
+        assertEquals("SALES>MAN", emp.getValue(1, "job"));
+        ITableIterator it = actual.iterator();
+        it.next();
+        it.next();
+        Assertion.assertEquals(expected.getTable("dept"), it.getTable());
+        assertEquals("R&D", actual.getTable("dept").getValue(1, "dname"));
+    }
+
+    @Test(expected=NoSuchTableException.class)
+    public void subset_unknown() throws Exception {
+        new IndexedFlatXmlDataSet(url, new String[] {"salgrade"});
+    }
+
+    @Test(expected=NoSuchTableException.class)
+    public void getTable_unknown() throws Exception {
+        new IndexedFlatXmlDataSet(url, new String[] {"emp"}).getTable("dept");
+    }
+
+    @Test
+    public void not_indexable() throws Exception {
+        File file = File.createTempFile("utf16", ".xml");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-16");
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-16\"?>\n"
+                + "<dataset><emp empno=\"1\"/><dept deptno=\"10\"/></dataset>");
+        } finally {
+            writer.close();
+        }
+        URL utf16 = file.toURI().toURL();
+        assertFalse(FlatXmlIndex.forUrl(utf16).isIndexable());
+        IndexedFlatXmlDataSet actual = new IndexedFlatXmlDataSet(utf16, new String[] {"dept"});
+        assertEquals("10", actual.getTable("dept").getValue(0, "deptno"));
+    }
+
+    @Test
+    public void createDataSet_selection() throws Exception {
+        IDataSet actual = new TestPlan(new TestClass(getClass()))
+            .createDataSet("indexed.xml#emp");
+        assertArrayEquals(new String[] {"emp"}, actual.getTableNames());
+        assertEquals(3, actual.getTable("emp").getRowCount());
+    }
+
+    @Test
+    public void createDataSet_selection_xls() throws Exception {
+        IDataSet actual = new TestPlan(new TestClass(getClass()))
+            .createDataSet("test.xls#emp");
+        assertArrayEquals(new String[] {"emp"}, actual.getTableNames());
+    }
+}
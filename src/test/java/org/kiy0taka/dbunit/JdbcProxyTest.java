@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JdbcProxyTest {
+
+    private JdbcStats stats = new JdbcStats();
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws SQLException {
+        Connection target = DriverManager.getConnection("jdbc:h2:target/db;SCHEMA=dev", "scott", "tiger");
+        target.setAutoCommit(false);
+        Statement stmt = target.createStatement();
+        stmt.executeUpdate("delete from dept");
+        stmt.close();
+        conn = JdbcProxy.connection(target, stats);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.rollback();
+        conn.close();
+    }
+
+    @Test
+    public void statements() throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement("insert into dept (deptno, dname) values (?, ?)");
+        for (int i = 1; i <= 3; i++) {
+            stmt.setInt(1, i);
+            stmt.setString(2, "D" + i);
+            stmt.addBatch();
+        }
+        assertEquals(3, stmt.executeBatch().length);
+        assertSame(conn, stmt.getConnection());
+        stmt.close();
+        assertEquals(3, stats.getStatements());
+        assertEquals(1, stats.getRoundTrips());
+
+        Statement query = conn.createStatement();
+        ResultSet rs = query.executeQuery("select deptno from dept order by deptno");
+        assertSame(query, rs.getStatement());
+        int count = 0;
+        while (rs.next()) {
+            count++;
+        }
+        assertEquals(3, count);
+        rs.close();
+        query.close();
+        conn.commit();
+        assertEquals(4, stats.getStatements());
+        assertEquals(3, stats.getRoundTrips());
+        assertEquals(3, stats.getRows());
+        assertTrue(stats.getNanos() > 0);
+    }
+
+    @Test
+    public void execute() throws SQLException {
+        Statement stmt = conn.createStatement();
+        assertTrue(stmt.execute("select * from dept"));
+        ResultSet rs = stmt.getResultSet();
+        assertFalse(rs.next());
+        rs.close();
+        stmt.close();
+        assertEquals(1, stats.getStatements());
+        assertEquals(1, stats.getRoundTrips());
+        assertEquals(0, stats.getRows());
+    }
+
+    @Test
+    public void dataSource() throws SQLException {
+        BasicDataSource target = new BasicDataSource();
+        target.setUrl("jdbc:h2:target/db;SCHEMA=dev");
+        target.setUsername("scott");
+        target.setPassword("tiger");
+        try {
+            DataSource dataSource = JdbcProxy.dataSource(target, stats);
+            Connection c = dataSource.getConnection();
+            Statement stmt = c.createStatement();
+            stmt.executeQuery("select count(*) from emp").next();
+            stmt.close();
+            c.close();
+            assertEquals(1, stats.getStatements());
+            assertEquals(1, stats.getRows());
+        } finally {
+            target.close();
+        }
+    }
+
+    @Test
+    public void identity() {
+        assertTrue(conn.equals(conn));
+        assertFalse(conn.equals(JdbcProxy.connection(conn, stats)));
+        assertEquals(System.identityHashCode(conn), conn.hashCode());
+        assertNull(JdbcProxy.connection(null, stats));
+        assertNull(JdbcProxy.dataSource(null, stats));
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class JdbcStatsTest {
+
+    @Test
+    public void assertWithin() throws Exception {
+        JdbcStats stats = stats(2, 3, 10, 1500000);
+        assertEquals("statements=2, roundTrips=3, rows=10, time=1.500ms", stats.toString());
+        stats.assertWithin(limit("unlimited"));
+        stats.assertWithin(limit("withinLimit"));
+        try {
+            stats.assertWithin(limit("statementLimit"));
+            fail();
+        } catch (AssertionError e) {
+            assertEquals("JDBC statements exceeded 1: statements=2, roundTrips=3, rows=10, time=1.500ms",
+                e.getMessage());
+        }
+        try {
+            stats.assertWithin(limit("rowLimit"));
+            fail();
+        } catch (AssertionError e) {
+            assertEquals("JDBC rows exceeded 9: statements=2, roundTrips=3, rows=10, time=1.500ms", e.getMessage());
+        }
+    }
+
+    @JdbcLimit
+    public void unlimited() {}
+
+    @JdbcLimit(statements=2, roundTrips=3, rows=10)
+    public void withinLimit() {}
+
+    @JdbcLimit(statements=1)
+    public void statementLimit() {}
+
+    @JdbcLimit(roundTrips=3, rows=9)
+    public void rowLimit() {}
+
+    private JdbcLimit limit(String methodName) throws NoSuchMethodException {
+        return getClass().getMethod(methodName).getAnnotation(JdbcLimit.class);
+    }
+
+    private JdbcStats stats(int statements, int roundTrips, int rows, long nanos) {
+        JdbcStats result = new JdbcStats();
+        result.addStatements(statements);
+        for (int i = 0; i < roundTrips; i++) {
+            result.addRoundTrip();
+        }
+        for (int i = 0; i < rows; i++) {
+            result.addRow();
+        }
+        result.addNanos(nanos);
+        return result;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void index() {
+        assertEquals(0, LatencyHistogram.index(0));
+        for (long value = 1; value < 1000000; value++) {
+            int index = LatencyHistogram.index(value);
+            int previous = LatencyHistogram.index(value - 1);
+            assertTrue(index == previous
+                || index == previous + 1 && LatencyHistogram.highestValue(previous) == value - 1);
+            assertTrue(LatencyHistogram.highestValue(index) >= value);
+            assertTrue(LatencyHistogram.highestValue(index) - value <= value / 32);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMin());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500500, histogram.getMean(), 0);
+        assertEquals(500000, histogram.getPercentile(50), 500000 / 32);
+        assertEquals(990000, histogram.getPercentile(99), 990000 / 32);
+        assertEquals(1000, histogram.getPercentile(0), 1000 / 32);
+        assertEquals(1000000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void add() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        LatencyHistogram other = new LatencyHistogram();
+        other.record(3000000);
+        other.record(-1);
+        histogram.add(other);
+        assertEquals(3, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(3000000, histogram.getMax());
+        assertEquals("min=0.000ms p50=0.000ms p90=3.000ms p99=3.000ms p99.9=3.000ms max=3.000ms",
+            histogram.toString());
+    }
+
+    @Test
+    public void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+}
@@ -189,6 +189,106 @@ public class SampleTestCaseNoTestConnectionTest {
         }
     }
 
+    @DbUnitTest(init="sample/emp.xml", sqlScript="sample/setup.sql",
+        sql="alter sequence my_seq increment by 10", batchSql=true)
+    public void dbunit_sql_script() throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("select NEXTVAL('my_seq'), NEXTVAL('my_seq')");
+            assertTrue(rs.next());
+            assertEquals(200, rs.getInt(1));
+            assertEquals(210, rs.getInt(2));
+        } finally {
+            close(conn, stmt, rs);
+        }
+    }
+
+    @DbUnitTest(init="sample/emp.xml", resetSequences="my_seq=emp.empno")
+    public void dbunit_reset_sequence() throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("select NEXTVAL('my_seq')");
+            assertTrue(rs.next());
+            assertEquals(7522, rs.getInt(1));
+        } finally {
+            close(conn, stmt, rs);
+        }
+    }
+
+    @DbUnitTest(init="sample/bonus.xml", resetIdentity=true)
+    public void dbunit_reset_identity() throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            stmt.executeUpdate("insert into bonus (empno, comm) values (7521, 500)");
+            rs = stmt.executeQuery("select bonusno from bonus where empno = 7521");
+            assertTrue(rs.next());
+            assertEquals(21, rs.getInt(1));
+        } finally {
+            close(conn, stmt, rs);
+        }
+    }
+
+    @DbUnitTest(init="sample/emp.xml", operation=DbUnitTest.Operation.TRUNCATE_INSERT,
+        expected="sample/emp_expected.xml")
+    public void dbunit_truncate_insert() throws SQLException {
+        dbunit_write();
+    }
+
+    @DbUnitTest(init="sample/emp.xml", expected="sample/emp_expected_subset.xml",
+        assertMode=DbUnitTest.AssertMode.SUBSET)
+    public void dbunit_subset() throws SQLException {
+        dbunit_write();
+    }
+
+    @DbUnitTest(init="sample/emp.xml", expected="sample/emp_expected.xml",
+        assertMode=DbUnitTest.AssertMode.EXCEPT)
+    public void dbunit_except() throws SQLException {
+        dbunit_write();
+    }
+
+    @DbUnitTest(init="sample/emp.xml", expected="sample/emp_expected.xml",
+        assertMode=DbUnitTest.AssertMode.EXTERNAL_SORT, sortBufferRows=2)
+    public void dbunit_external_sort() throws SQLException {
+        dbunit_write();
+    }
+
+    @DbUnitTest(init="sample/emp.xml", expected="sample/emp_expected.xml",
+        comparison=DbUnitTest.Comparison.TYPED)
+    public void dbunit_typed_comparison() throws SQLException {
+        dbunit_write();
+    }
+
+    @DbUnitTest(init="sample/bonus.xml#emp", expected="sample/bonus.xml#emp")
+    public void dbunit_table_selection() {
+    }
+
+    @DbUnitTest(init="sample/emp.xml.gz", expected="sample/emp.xml.gz")
+    public void dbunit_compressed() {
+    }
+
+    @DbUnitTest(init="sample/emp.gen")
+    public void dbunit_generated() throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("select count(*), count(distinct deptno), min(empno), max(ename) from emp");
+            assertTrue(rs.next());
+            assertEquals(1000, rs.getInt(1));
+            assertEquals(3, rs.getInt(2));
+            assertEquals(1000, rs.getInt(3));
+            assertEquals("EMP1000", rs.getString(4));
+        } finally {
+            close(conn, stmt, rs);
+        }
+    }
+
     private void close(Connection conn, Statement stmt, ResultSet rs) {
         SQLException failureCause = null;
         try {
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.model.InitializationError;
+
+@RunWith(SampleTestCaseWithSharedConnectionTest.SharedConnectionRunner.class)
+public class SampleTestCaseWithSharedConnectionTest {
+
+    public static class SharedConnectionRunner extends DbUnitRunner {
+        public SharedConnectionRunner(Class<?> testClass) throws InitializationError {
+            super(testClass);
+            shareConnection = true;
+            statementCacheSize = 20;
+            assertChecksum = true;
+            prefetchThreads = 2;
+            xmlType = DataSetType.xmlpull;
+            fixtureCacheDir = "target/fixture-cache";
+            jdbcReportFile = "target/jdbc-stats.txt";
+        }
+    }
+
+    @TestConnection
+    private Connection conn;
+
+    @Test
+    public void junit() throws SQLException {
+        assertFalse(conn.getAutoCommit());
+    }
+
+    @DbUnitTest(init="sample/emp.xml")
+    public void dbunit_read() throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("select count(*) from emp");
+            assertTrue(rs.next());
+            assertEquals(3, rs.getInt(1));
+        } finally {
+            close(stmt, rs);
+        }
+    }
+
+    @DbUnitTest(init="sample/emp.xml", expected="sample/emp_expected.xml")
+    public void dbunit_write() throws SQLException {
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(
+                "insert into emp (empno, ename, job, mgr, hiredate, sal, comm, deptno) " +
+                "values (?, ?, ?, ?, ?, ?, ?, ?)");
+            stmt.setInt(1, 7566);
+            stmt.setString(2, "JONES");
+            stmt.setString(3, "MANAGER");
+            stmt.setInt(4, 7839);
+            stmt.setDate(5, Date.valueOf("1981-04-02"));
+            stmt.setBigDecimal(6, new BigDecimal("2975"));
+            stmt.setBigDecimal(7, new BigDecimal("100"));
+            stmt.setInt(8, 20);
+            assertEquals(1, stmt.executeUpdate());
+        } finally {
+            close(stmt, null);
+        }
+    }
+
+    @DbUnitTest(init="sample/emp.xml")
+    @LoadTest(threads=4, iterations=50, warmup=10)
+    public void dbunit_load() throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.prepareStatement("select ename from emp where empno = ?");
+            stmt.setInt(1, 7369);
+            rs = stmt.executeQuery();
+            assertTrue(rs.next());
+            assertEquals("SMITH", rs.getString(1));
+        } finally {
+            close(stmt, rs);
+        }
+    }
+
+    @DbUnitTest(init="sample/emp.xml")
+    @JdbcLimit(statements=1, rows=3)
+    public void dbunit_jdbc_limit() throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("select e.ename, d.dname from emp e left join dept d on e.deptno = d.deptno");
+            int count = 0;
+            while (rs.next()) {
+                count++;
+            }
+            assertEquals(3, count);
+        } finally {
+            close(stmt, rs);
+        }
+    }
+
+    private void close(Statement stmt, ResultSet rs) {
+        SQLException failureCause = null;
+        try {
+            if (rs != null) rs.close();
+        } catch (SQLException e) {
+            failureCause = e;
+        }
+        try {
+            if (stmt != null) stmt.close();
+        } catch (SQLException e) {
+            failureCause = failureCause == null ? e : failureCause;
+        }
+        if (failureCause != null) throw new RuntimeException(failureCause);
+    }
+}
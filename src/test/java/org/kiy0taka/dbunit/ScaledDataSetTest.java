@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.xml.FlatXmlDataSet;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+public class ScaledDataSetTest {
+
+    private static final String XML = "<dataset>"
+        + "<dept deptno='10' dname='ACCOUNTING'/>"
+        + "<dept deptno='20' dname='RESEARCH'/>"
+        + "<emp empno='7369' ename='SMITH' mgr='7902' deptno='20'/>"
+        + "<emp empno='7902' ename='FORD' deptno='20'/>"
+        + "<code id='A' name='a'/>"
+        + "</dataset>";
+
+    @Test
+    public void scale() throws Exception {
+        IDataSet dataSet = new ScaledDataSet(dataSet(), 3, new String[] {""},
+            new String[] {"dept.deptno", "EMP.EMPNO", "emp.mgr", "emp.deptno", "code.id"});
+        assertArrayEquals(new String[] {"dept", "emp", "code"}, dataSet.getTableNames());
+
+        ITable dept = dataSet.getTable("dept");
+        assertEquals(6, dept.getRowCount());
+        assertEquals("10", dept.getValue(0, "deptno"));
+        assertEquals("20", dept.getValue(1, "deptno"));
+        assertEquals("10010", dept.getValue(2, "deptno"));
+        assertEquals("20020", dept.getValue(5, "deptno"));
+        assertEquals("RESEARCH", dept.getValue(5, "dname"));
+
+        ITable emp = dataSet.getTable("emp");
+        assertEquals(6, emp.getRowCount());
+        assertEquals("17369", emp.getValue(2, "empno"));
+        assertEquals("17902", emp.getValue(2, "mgr"));
+        assertEquals("10020", emp.getValue(2, "deptno"));
+        assertEquals("SMITH", emp.getValue(2, "ename"));
+        assertEquals("27902", emp.getValue(5, "empno"));
+        assertNull(emp.getValue(5, "mgr"));
+
+        ITable code = dataSet.getTable("code");
+        assertEquals("A", code.getValue(0, "id"));
+        assertEquals("A-1", code.getValue(1, "id"));
+        assertEquals("A-2", code.getValue(2, "id"));
+        assertEquals("a", code.getValue(2, "name"));
+    }
+
+    @Test
+    public void scale_tables() throws Exception {
+        IDataSet base = dataSet();
+        IDataSet dataSet = new ScaledDataSet(base, 10, new String[] {"EMP"}, new String[] {"emp.empno"});
+        assertSame(base.getTable("dept"), dataSet.getTable("dept"));
+        assertEquals(20, dataSet.getTable("emp").getRowCount());
+        assertEquals("97369", dataSet.getTable("emp").getValue(18, "empno"));
+        assertEquals("7902", dataSet.getTable("emp").getValue(18, "mgr"));
+        assertArrayEquals(new String[] {"emp"}, ScaledDataSet.tableNames(base, new String[] {"EMP"}));
+        assertEquals(3, ScaledDataSet.tableNames(base, new String[] {""}).length);
+    }
+
+    @Test
+    public void scale_one() throws Exception {
+        IDataSet base = dataSet();
+        IDataSet dataSet = new ScaledDataSet(base, 1, new String[] {""}, new String[] {"emp.empno"});
+        assertSame(base.getTable("emp"), dataSet.getTable("emp"));
+    }
+
+    @Test
+    public void scale_invalid_factor() throws Exception {
+        try {
+            new ScaledDataSet(dataSet(), 0, new String[] {""}, new String[] {""});
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid scale factor: 0", e.getMessage());
+        }
+    }
+
+    private static IDataSet dataSet() throws Exception {
+        return new FlatXmlDataSet(new FlatXmlProducer(new InputSource(new StringReader(XML))));
+    }
+}
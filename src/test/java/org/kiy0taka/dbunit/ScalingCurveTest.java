@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.kiy0taka.dbunit.ScalingTest.Complexity;
+
+public class ScalingCurveTest {
+
+    private static final int[] FACTORS = {1, 10, 100};
+
+    @Test
+    public void assertWithin() {
+        ScalingCurve curve = new ScalingCurve(FACTORS, new long[] {1000000, 12000000, 150000000});
+        curve.assertWithin(Complexity.LINEAR, 2);
+        curve.assertWithin(Complexity.QUADRATIC, 1);
+        assertEquals("1x=1.000ms, 10x=12.000ms, 100x=150.000ms", curve.toString());
+    }
+
+    @Test
+    public void assertWithin_failure() {
+        ScalingCurve curve = new ScalingCurve(FACTORS, new long[] {1000000, 12000000, 150000000});
+        try {
+            curve.assertWithin(Complexity.LINEAR, 1.2);
+            fail();
+        } catch (AssertionError e) {
+            assertEquals("time grows faster than LINEAR at 100x (limit 120.000ms): "
+                + "1x=1.000ms, 10x=12.000ms, 100x=150.000ms", e.getMessage());
+        }
+        try {
+            curve.assertWithin(Complexity.LOGARITHMIC, 2);
+            fail();
+        } catch (AssertionError e) {
+            assertEquals("time grows faster than LOGARITHMIC at 10x (limit 8.644ms): "
+                + "1x=1.000ms, 10x=12.000ms, 100x=150.000ms", e.getMessage());
+        }
+    }
+
+    @Test
+    public void cost() {
+        assertEquals(1, Complexity.CONSTANT.cost(100), 0);
+        assertEquals(4, Complexity.LOGARITHMIC.cost(8), 1e-9);
+        assertEquals(8, Complexity.LINEAR.cost(8), 0);
+        assertEquals(32, Complexity.LINEARITHMIC.cost(8), 1e-9);
+        assertEquals(64, Complexity.QUADRATIC.cost(8), 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void create_invalid() {
+        new ScalingCurve(FACTORS, new long[] {1, 2});
+    }
+}
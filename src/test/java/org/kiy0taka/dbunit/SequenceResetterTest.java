@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.xml.FlatXmlDataSet;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+public class SequenceResetterTest extends H2TestCase {
+
+    protected void createTables() throws SQLException {
+        stmt("create sequence emp_seq");
+        stmt("create table emp (empno integer default next value for emp_seq primary key, ename varchar(10))");
+        stmt("create table dept (deptno integer default next value for emp_seq primary key)");
+        stmt("create table bonus (bonusno identity, empno integer)");
+    }
+
+    @Test
+    public void reset_column_default() throws Exception {
+        new SequenceResetter().reset(connection, dataSet("<emp empno='7' ename='SMITH'/><emp empno='3'/>"), true);
+        assertEquals(8, nextValue("emp_seq"));
+    }
+
+    @Test
+    public void reset_shared_sequence() throws Exception {
+        new SequenceResetter().reset(connection, dataSet("<emp empno='7'/><dept deptno='40'/>"), true);
+        assertEquals(41, nextValue("emp_seq"));
+    }
+
+    @Test
+    public void reset_identity() throws Exception {
+        new SequenceResetter().reset(connection, dataSet("<bonus bonusno='20' empno='7'/>"), true);
+        stmt("insert into bonus (empno) values (8)");
+        assertEquals(21, query("select bonusno from bonus where empno = 8"));
+    }
+
+    @Test
+    public void reset_disabled() throws Exception {
+        new SequenceResetter().reset(connection, dataSet("<emp empno='7'/>"), false);
+        assertEquals(1, nextValue("emp_seq"));
+    }
+
+    @Test
+    public void sequence() {
+        assertEquals("PUBLIC.EMP_SEQ", SequenceResetter.sequence("(NEXT VALUE FOR PUBLIC.EMP_SEQ)"));
+        assertEquals("emp_seq", SequenceResetter.sequence("nextval('emp_seq'::regclass)"));
+        assertNull(SequenceResetter.sequence("0"));
+        assertNull(SequenceResetter.sequence(null));
+    }
+
+    private static IDataSet dataSet(String rows) throws Exception {
+        return new FlatXmlDataSet(new FlatXmlProducer(new InputSource(new StringReader(
+            "<dataset>" + rows + "</dataset>"))));
+    }
+
+    private long nextValue(String sequence) throws SQLException {
+        return query("select next value for " + sequence);
+    }
+
+    private long query(String sql) throws SQLException {
+        Statement stmt = conn.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery(sql);
+            rs.next();
+            return rs.getLong(1);
+        } finally {
+            stmt.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SqlScriptTest {
+
+    @Test
+    public void parse() throws IOException {
+        assertEquals(Arrays.asList("delete from emp", "delete from dept"),
+            parse("delete from emp;\ndelete from dept;\n"));
+    }
+
+    @Test
+    public void parse_no_last_semicolon() throws IOException {
+        assertEquals(Arrays.asList("delete from emp", "delete from dept"),
+            parse("delete from emp;\ndelete from dept\n"));
+    }
+
+    @Test
+    public void parse_empty() throws IOException {
+        assertEquals(Collections.emptyList(), parse(" ;\n; "));
+    }
+
+    @Test
+    public void parse_line_comment() throws IOException {
+        assertEquals(Arrays.asList("delete from emp", "delete from dept"),
+            parse("-- comment;\ndelete from emp; -- comment;\ndelete from dept"));
+    }
+
+    @Test
+    public void parse_block_comment() throws IOException {
+        assertEquals(Arrays.asList("delete from   emp", "delete from dept"),
+            parse("/* comment; */delete from /* ; */ emp;\ndelete from dept"));
+    }
+
+    @Test
+    public void parse_quoted() throws IOException {
+        assertEquals(Arrays.asList("insert into emp (ename) values ('a;''--b')", "select \"a;b\" from dual"),
+            parse("insert into emp (ename) values ('a;''--b');select \"a;b\" from dual;"));
+    }
+
+    @Test
+    public void load() throws IOException {
+        assertEquals(Arrays.asList("DELETE FROM dept", "ALTER SEQUENCE my_seq RESTART WITH 200"),
+            SqlScript.load(getClass().getResource("sample/setup.sql")));
+    }
+
+    private static List<String> parse(String script) throws IOException {
+        return SqlScript.parse(new StringReader(script));
+    }
+}
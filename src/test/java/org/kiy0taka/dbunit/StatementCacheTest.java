@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class StatementCacheTest {
+
+    private Connection target;
+
+    private Map<String, PreparedStatement> prepared = new HashMap<String, PreparedStatement>();
+
+    @Before
+    public void setUp() throws SQLException {
+        target = mock(Connection.class);
+        when(target.prepareStatement(anyString())).thenAnswer(new Answer<PreparedStatement>() {
+            public PreparedStatement answer(InvocationOnMock invocation) {
+                PreparedStatement stmt = mock(PreparedStatement.class);
+                prepared.put((String) invocation.getArguments()[0], stmt);
+                return stmt;
+            }
+        });
+    }
+
+    @Test
+    public void prepareStatement_reuse() throws SQLException {
+        Connection conn = StatementCache.connection(target, 2);
+        PreparedStatement stmt = conn.prepareStatement("a");
+        assertSame(conn, stmt.getConnection());
+        stmt.setInt(1, 10);
+        stmt.close();
+        assertTrue(stmt.isClosed());
+        assertEquals(1, StatementCache.size(conn));
+        conn.prepareStatement("a").close();
+        verify(target, times(1)).prepareStatement("a");
+        verify(prepared.get("a"), times(2)).clearParameters();
+        verify(prepared.get("a"), never()).close();
+    }
+
+    @Test
+    public void prepareStatement_evict() throws SQLException {
+        Connection conn = StatementCache.connection(target, 1);
+        PreparedStatement a = conn.prepareStatement("a");
+        PreparedStatement b = conn.prepareStatement("b");
+        a.close();
+        b.close();
+        assertEquals(1, StatementCache.size(conn));
+        verify(prepared.get("a")).close();
+        verify(prepared.get("b"), never()).close();
+    }
+
+    @Test
+    public void prepareStatement_open_more_than_size() throws SQLException {
+        Connection conn = StatementCache.connection(target, 1);
+        PreparedStatement[] stmts = new PreparedStatement[3];
+        for (int i = 0; i < stmts.length; i++) {
+            stmts[i] = conn.prepareStatement("select " + i);
+            assertFalse(stmts[i].isClosed());
+        }
+        for (PreparedStatement stmt : stmts) {
+            stmt.close();
+        }
+        assertEquals(1, StatementCache.size(conn));
+    }
+
+    @Test
+    public void prepareStatement_closed() throws SQLException {
+        Connection conn = StatementCache.connection(target, 1);
+        PreparedStatement stmt = conn.prepareStatement("a");
+        stmt.close();
+        try {
+            stmt.executeQuery();
+            fail("Expecting SQLException");
+        } catch (SQLException e) {
+            assertEquals("Statement is closed.", e.getMessage());
+        }
+        verify(prepared.get("a"), never()).executeQuery();
+    }
+
+    @Test
+    public void close() throws SQLException {
+        Connection conn = StatementCache.connection(target, 2);
+        conn.prepareStatement("a").close();
+        conn.close();
+        assertEquals(0, StatementCache.size(conn));
+        verify(prepared.get("a")).close();
+        verify(target).close();
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+
+import org.dbunit.dataset.ITable;
+import org.junit.Test;
+import org.kiy0taka.dbunit.DbUnitTest.AssertMode;
+
+public class SubsetTableAssertionTest extends H2TestCase {
+
+    protected void createTables() throws SQLException {
+        stmt("create table emp (empno integer primary key, ename varchar(10))");
+        stmt("create table grade (empno integer, year integer, grade varchar(10), primary key (empno, year))");
+        stmt("create table note (empno integer, note varchar(10))");
+        for (int i = 1; i <= 10; i++) {
+            stmt("insert into emp values (" + i + ", 'EMP" + i + "')");
+            stmt("insert into grade values (" + i + ", 2010, 'A')");
+            stmt("insert into grade values (" + i + ", 2011, 'B')");
+        }
+        stmt("insert into note values (1, 'NOTE')");
+    }
+
+    @Test
+    @DbUnitTest(init="")
+    public void assertTable() throws Exception {
+        assertSubset(3, "<emp empno='2' ename='EMP2'/><emp empno='7' ename='EMP7'/><emp empno='9' ename='EMP9'/>");
+    }
+
+    @Test
+    @DbUnitTest(init="")
+    public void assertTable_composite_key() throws Exception {
+        assertSubset(1, "<grade empno='3' year='2011' grade='B'/><grade empno='4' year='2010' grade='A'/>");
+    }
+
+    @Test
+    @DbUnitTest(init="")
+    public void assertTable_columns() throws Exception {
+        assertSubset(2, "<emp empno='5'/><emp empno='6'/>");
+    }
+
+    @Test(expected=AssertionError.class)
+    @DbUnitTest(init="")
+    public void assertTable_failure() throws Exception {
+        assertSubset(2, "<emp empno='2' ename='EMP2'/><emp empno='3' ename='EMP2'/>");
+    }
+
+    @Test(expected=AssertionError.class)
+    @DbUnitTest(init="")
+    public void assertTable_missing_row() throws Exception {
+        assertSubset(2, "<emp empno='2' ename='EMP2'/><emp empno='11' ename='EMP11'/>");
+    }
+
+    @Test
+    @DbUnitTest(init="", assertRowCount=true)
+    public void assertTable_row_count() throws Exception {
+        try {
+            assertSubset(2, "<emp empno='2' ename='EMP2'/>");
+            fail("Expecting AssertionError");
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("row count (table=emp)"));
+        }
+    }
+
+    @Test(expected=AssertionError.class)
+    @DbUnitTest(init="")
+    public void assertTable_no_primary_key() throws Exception {
+        stmt("insert into note values (2, 'NOTE')");
+        assertSubset(2, "<note empno='1' note='NOTE'/>");
+    }
+
+    @Test
+    @DbUnitTest(init="", assertMode=AssertMode.SUBSET)
+    public void toTableAssertion() {
+        assertTrue(getAnnotation().assertMode().toTableAssertion() instanceof SubsetTableAssertion);
+    }
+
+    private void assertSubset(int batchSize, String rows) throws Exception {
+        ITable expected = table(rows);
+        String tableName = expected.getTableMetaData().getTableName();
+        new SubsetTableAssertion(batchSize).assertTable(connection,
+            connection.createDataSet().getTableMetaData(tableName), expected, getAnnotation());
+    }
+}
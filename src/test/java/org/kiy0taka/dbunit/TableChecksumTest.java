@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.junit.Test;
+
+public class TableChecksumTest extends H2TestCase {
+
+    private static final String EXPECTED = "<emp empno='2' ename='ALLEN' hiredate='1981-02-20' sal='1600.5'/>"
+        + "<emp empno='1' ename='SMITH' hiredate='1980-12-17' sal='800'/>"
+        + "<emp empno='3' ename='WARD' sal='1250'/>";
+
+    private TableChecksum checksum = new TableChecksum();
+
+    protected void createTables() throws SQLException {
+        stmt("create table emp (empno integer primary key, ename varchar(10), hiredate date, sal decimal(7,2))");
+        stmt("insert into emp values (1, 'SMITH', '1980-12-17', 800)");
+        stmt("insert into emp values (2, 'ALLEN', '1981-02-20', 1600.5)");
+        stmt("insert into emp values (3, 'WARD', null, 1250)");
+    }
+
+    @Test
+    public void matches() throws Exception {
+        assertTrue(matches(EXPECTED, false));
+    }
+
+    @Test
+    public void matches_columns() throws Exception {
+        assertTrue(matches("<emp empno='3' ename='WARD'/><emp empno='1' ename='SMITH'/><emp empno='2' ename='ALLEN'/>",
+            false));
+    }
+
+    @Test
+    public void matches_rtrim() throws Exception {
+        stmt("update emp set ename = 'WARD  ' where empno = 3");
+        assertFalse(matches(EXPECTED, false));
+        assertTrue(matches(EXPECTED, true));
+    }
+
+    @Test
+    public void matches_swapped_values() throws Exception {
+        stmt("update emp set ename = case empno when 1 then 'ALLEN' when 2 then 'SMITH' else ename end");
+        assertFalse(matches(EXPECTED, false));
+    }
+
+    @Test
+    public void matches_null() throws Exception {
+        stmt("update emp set hiredate = null where empno = 1");
+        assertFalse(matches(EXPECTED, false));
+    }
+
+    @Test
+    public void matches_extra_row() throws Exception {
+        stmt("insert into emp values (4, 'WARD', null, 1250)");
+        assertFalse(matches(EXPECTED, false));
+    }
+
+    @Test
+    public void matches_decimal_scale() throws Exception {
+        assertTrue(matches(EXPECTED.replace("sal='800'", "sal='800.000'"), false));
+        assertFalse(matches(EXPECTED.replace("sal='800'", "sal='800.004'"), false));
+    }
+
+    @Test
+    public void matches_unknown_column() throws Exception {
+        assertFalse(matches("<emp empno='1' job='CLERK'/>", false));
+    }
+
+    @Test
+    public void matches_cached() throws Exception {
+        ITable expected = table(EXPECTED);
+        assertTrue(checksum.matches(connection, metaData(expected), expected, false, "key"));
+        stmt("delete from emp where empno = 3");
+        ITable changed = table("<emp empno='2' ename='ALLEN' hiredate='1981-02-20' sal='1600.5'/>"
+            + "<emp empno='1' ename='SMITH' hiredate='1980-12-17' sal='800'/>");
+        assertFalse(checksum.matches(connection, metaData(changed), changed, false, "key"));
+        assertTrue(checksum.matches(connection, metaData(changed), changed, false, "other"));
+    }
+
+    private boolean matches(String rows, boolean rtrim) throws Exception {
+        ITable expected = table(rows);
+        return checksum.matches(connection, metaData(expected), expected, rtrim, rows + rtrim);
+    }
+
+    private ITableMetaData metaData(ITable expected) throws Exception {
+        return connection.createDataSet().getTableMetaData(expected.getTableMetaData().getTableName());
+    }
+}
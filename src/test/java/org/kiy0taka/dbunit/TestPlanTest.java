@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.TestClass;
+
+public class TestPlanTest {
+
+    @Test
+    public void getAnnotation() throws Exception {
+        TestPlan plan = new TestPlan(new TestClass(ValidFixtures.class));
+        assertEquals("test.xml",
+            plan.getAnnotation(new FrameworkMethod(ValidFixtures.class.getMethod("write"))).expected());
+        assertNull(plan.getAnnotation(new FrameworkMethod(ValidFixtures.class.getMethod("junit"))));
+    }
+
+    @Test
+    public void getResource() throws Exception {
+        TestPlan plan = new TestPlan(new TestClass(ValidFixtures.class));
+        assertSame(plan.getResource("test.xml"), plan.getResource("test.xml"));
+        assertNotNull(plan.getResource("emp.xml"));
+        assertNotNull(plan.createDataSet("test.xls").getTable("emp"));
+    }
+
+    @Test
+    public void getResource_not_found() throws Exception {
+        TestPlan plan = new TestPlan(new TestClass(InvalidFixtures.class));
+        try {
+            plan.getResource("not_found.xml");
+            fail("Expecting RuntimeException");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof FileNotFoundException);
+        }
+    }
+
+    @Test
+    public void getType() throws Exception {
+        TestPlan plan = new TestPlan(new TestClass(ValidFixtures.class));
+        assertEquals(DataSetType.xls, plan.getType("test.xls", DataSetType.xml, DataSetType.xls));
+        assertEquals(DataSetType.xlsevent, plan.getType("test.xls", DataSetType.xml, DataSetType.xlsevent));
+        assertEquals(DataSetType.xmlpull, plan.getType("test.xml", DataSetType.xmlpull, DataSetType.xlsevent));
+    }
+
+    @Test
+    public void checkFixtures() throws Exception {
+        new TestPlan(new TestClass(ValidFixtures.class)).checkFixtures();
+    }
+
+    @Test
+    public void checkFixtures_invalid() throws Exception {
+        try {
+            new TestPlan(new TestClass(InvalidFixtures.class)).checkFixtures();
+            fail("Expecting RuntimeException");
+        } catch (RuntimeException e) {
+            String message = e.getMessage();
+            assertTrue(message, message.startsWith("Invalid fixtures of " + InvalidFixtures.class.getName() + ":"));
+            assertTrue(message, message.contains(
+                "\n  not_found.xml (missing): java.io.FileNotFoundException: not_found.xml"));
+            assertTrue(message, message.contains("\n  test.txt (unknownType): java.lang.IllegalArgumentException"));
+            assertNotNull(e.getCause());
+        }
+    }
+
+    @Test
+    public void run_invalid() throws Exception {
+        Result result = JUnitCore.runClasses(InvalidFixtures.class);
+        assertEquals(1, result.getFailureCount());
+        assertEquals(0, result.getRunCount());
+        assertTrue(result.getFailures().get(0).getMessage().startsWith("Invalid fixtures of "));
+    }
+
+    @Test
+    public void fields() throws Exception {
+        TestPlan plan = new TestPlan(new TestClass(ValidFixtures.class));
+        List<Field> connFields = plan.getConnectionFields();
+        assertEquals(1, connFields.size());
+        assertTrue(connFields.get(0).isAccessible());
+        assertEquals(Connection.class, connFields.get(0).getType());
+        assertEquals(1, plan.getDataSourceFields().size());
+        assertEquals(DataSource.class, plan.getDataSourceFields().get(0).getType());
+    }
+
+    public static class ValidFixtures {
+
+        @TestConnection
+        private Connection conn;
+
+        @TestDataSource
+        private DataSource ds;
+
+        @Test
+        public void junit() {
+        }
+
+        @DbUnitTest(init="emp.xml", expected="test.xml")
+        public void write() {
+        }
+
+        @DbUnitTest(init="test.xls")
+        public void read() {
+        }
+    }
+
+    @RunWith(DbUnitRunner.class)
+    public static class InvalidFixtures {
+
+        @DbUnitTest(init="not_found.xml")
+        public void missing() {
+        }
+
+        @DbUnitTest(init="test.txt")
+        public void unknownType() {
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.xml.FlatXmlDataSet;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+public class TruncateInsertOperationTest {
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:truncate");
+        Statement stmt = conn.createStatement();
+        try {
+            stmt.execute("create table dept (deptno integer primary key, dname varchar(14))");
+            stmt.execute("create table emp (empno integer primary key, ename varchar(10),"
+                + " deptno integer references dept (deptno))");
+            stmt.execute("insert into dept values (10, 'ACCOUNTING')");
+            stmt.execute("insert into emp values (7782, 'CLARK', 10)");
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void execute() throws Exception {
+        IDatabaseConnection connection = new DatabaseConnection(conn);
+        new TruncateInsertOperation().execute(connection, dataSet());
+
+        assertEquals(2, count("emp"));
+        assertEquals(1, count("dept"));
+        assertEquals(0, count("emp where empno = 7782"));
+        assertEquals(0, count("dept where deptno = 10"));
+    }
+
+    @Test
+    public void execute_referential_integrity_enabled() throws Exception {
+        new TruncateInsertOperation().execute(new DatabaseConnection(conn), dataSet());
+        Statement stmt = conn.createStatement();
+        try {
+            stmt.execute("insert into emp values (1, 'NOBODY', 99)");
+            fail("Expecting SQLException");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("DEPTNO"));
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static IDataSet dataSet() throws DataSetException {
+        return new FlatXmlDataSet(new FlatXmlProducer(new InputSource(new StringReader(
+            "<dataset>"
+            + "<dept deptno='20' dname='RESEARCH'/>"
+            + "<emp empno='7369' ename='SMITH' deptno='20'/>"
+            + "<emp empno='7566' ename='JONES' deptno='20'/>"
+            + "</dataset>"))));
+    }
+
+    private int count(String from) throws SQLException {
+        Statement stmt = conn.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("select count(*) from " + from);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            stmt.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.sql.Date;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.ComparisonFailure;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Test;
+
+public class TypedAssertionTest {
+
+    @Test
+    public void assertEquals_success() throws Exception {
+        TypedAssertion.assertEquals(expected(), actual("SMITH  ", "800.00"), true);
+    }
+
+    @Test
+    public void assertEquals_value() throws Exception {
+        try {
+            TypedAssertion.assertEquals(expected(), actual("SMITH  ", "800.00"), false);
+            fail("Expecting ComparisonFailure");
+        } catch (ComparisonFailure e) {
+            assertEquals("value (table=emp, row=0, col=ename)", e.getMessage().substring(0, 35));
+            assertEquals("SMITH", e.getExpected());
+            assertEquals("SMITH  ", e.getActual());
+        }
+    }
+
+    @Test
+    public void assertEquals_row_count() throws Exception {
+        DefaultTable actual = actual("SMITH", "800");
+        actual.addRow(new Object[] {7499, "ALLEN", Date.valueOf("1981-02-20"), new BigDecimal("1600")});
+        try {
+            TypedAssertion.assertEquals(expected(), actual, false);
+            fail("Expecting ComparisonFailure");
+        } catch (ComparisonFailure e) {
+            assertEquals("1", e.getExpected());
+            assertEquals("2", e.getActual());
+        }
+    }
+
+    @Test(expected=ComparisonFailure.class)
+    public void assertEquals_columns() throws Exception {
+        DefaultTable actual = new DefaultTable("emp", new Column[] {new Column("empno", DataType.INTEGER)});
+        actual.addRow(new Object[] {7369});
+        TypedAssertion.assertEquals(expected(), actual, false);
+    }
+
+    @Test(expected=ComparisonFailure.class)
+    public void assertEquals_decimal() throws Exception {
+        TypedAssertion.assertEquals(expected(), actual("SMITH", "800.01"), false);
+    }
+
+    @Test
+    public void assertEquals_key() throws Exception {
+        try {
+            TypedAssertion.assertEquals(expected(), actual("SMYTH", "800"), false, keys(),
+                new DiffReporter("emp", 1, null));
+            fail("Expecting ComparisonFailure");
+        } catch (ComparisonFailure e) {
+            assertEquals("value (table=emp, row=0, empno=7369, col=ename)", e.getMessage().substring(0, 47));
+        }
+    }
+
+    @Test
+    public void assertEquals_maxDiffs() throws Exception {
+        DefaultTable actual = actual("SMYTH", "801");
+        actual.addRow(new Object[] {7499, "ALLAN", Date.valueOf("1981-02-20"), new BigDecimal("1600")});
+        try {
+            TypedAssertion.assertEquals(expected2(), actual, false, keys(), new DiffReporter("emp", 2, null));
+            fail("Expecting AssertionFailedError");
+        } catch (AssertionFailedError e) {
+            assertEquals("at least 2 value differences (table=emp)"
+                + "\nrow=0, empno=7369, col=ename expected:<SMITH> but was:<SMYTH>"
+                + "\nrow=0, empno=7369, col=sal expected:<800> but was:<801>", e.getMessage());
+        }
+    }
+
+    @Test
+    public void assertEquals_diffFile() throws Exception {
+        File file = new File("target/diff/emp.txt");
+        file.delete();
+        DefaultTable actual = actual("SMYTH", "800");
+        actual.addRow(new Object[] {7499, "ALLAN", Date.valueOf("1981-02-20"), new BigDecimal("1600")});
+        try {
+            TypedAssertion.assertEquals(expected2(), actual, false, keys(),
+                new DiffReporter("emp", 1, "target/diff/{table}.txt"));
+            fail("Expecting AssertionFailedError");
+        } catch (AssertionFailedError e) {
+            assertEquals("2 value differences (table=emp, diff=" + file.getPath() + ")"
+                + "\nrow=0, empno=7369, col=ename expected:<SMITH> but was:<SMYTH>", e.getMessage());
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            assertEquals("row=0, empno=7369, col=ename expected:<SMITH> but was:<SMYTH>", reader.readLine());
+            assertEquals("row=1, empno=7499, col=ename expected:<ALLEN> but was:<ALLAN>", reader.readLine());
+            assertNull(reader.readLine());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void assertEquals_diffFile_success() throws Exception {
+        File file = new File("target/diff/success.txt");
+        file.delete();
+        TypedAssertion.assertEquals(expected(), actual("SMITH", "800"), false, keys(),
+            new DiffReporter("success", 10, "target/diff/{table}.txt"));
+        assertFalse(file.exists());
+    }
+
+    private static Column[] keys() {
+        return new Column[] {new Column("empno", DataType.UNKNOWN)};
+    }
+
+    private static ITable expected2() throws Exception {
+        DefaultTable result = (DefaultTable) expected();
+        result.addRow(new Object[] {"7499", "ALLEN", "1981-02-20", "1600"});
+        return result;
+    }
+
+    private static ITable expected() throws Exception {
+        DefaultTable result = new DefaultTable("emp", new Column[] {
+            new Column("empno", DataType.UNKNOWN),
+            new Column("ename", DataType.UNKNOWN),
+            new Column("hiredate", DataType.UNKNOWN),
+            new Column("sal", DataType.UNKNOWN)});
+        result.addRow(new Object[] {"7369", "SMITH", "1980-12-17", "800"});
+        return result;
+    }
+
+    private static DefaultTable actual(String ename, String sal) throws Exception {
+        DefaultTable result = new DefaultTable("EMP", new Column[] {
+            new Column("EMPNO", DataType.INTEGER),
+            new Column("ENAME", DataType.VARCHAR),
+            new Column("HIREDATE", DataType.DATE),
+            new Column("SAL", DataType.DECIMAL)});
+        result.addRow(new Object[] {7369, ename, Date.valueOf("1980-12-17"), new BigDecimal(sal)});
+        return result;
+    }
+}
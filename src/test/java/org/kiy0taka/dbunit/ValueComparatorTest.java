@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2009 kiy0taka.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiy0taka.dbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.Timestamp;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Test;
+
+public class ValueComparatorTest {
+
+    @Test
+    public void compare_long() {
+        ValueComparator comparator = comparator(DataType.INTEGER, false);
+        assertEquals(0, comparator.compare("7369", 7369));
+        assertEquals(0, comparator.compare(" 7369 ", BigInteger.valueOf(7369)));
+        assertTrue(comparator.compare("7369", 7370) < 0);
+        assertTrue(comparator.compare("99999999999999999999", 1L) > 0);
+    }
+
+    @Test
+    public void compare_decimal() {
+        ValueComparator comparator = comparator(DataType.DECIMAL, false);
+        assertEquals(0, comparator.compare("800", new BigDecimal("800.00")));
+        assertEquals(0, comparator.compare("1600.5", 1600.5d));
+        assertEquals(0, comparator.compare(100, new BigDecimal("1E+2")));
+        assertTrue(comparator.compare("800.01", new BigDecimal("800.00")) > 0);
+    }
+
+    @Test
+    public void compare_date() {
+        ValueComparator comparator = comparator(DataType.DATE, false);
+        assertEquals(0, comparator.compare("1980-12-17", Date.valueOf("1980-12-17")));
+        assertTrue(comparator.compare("1980-12-17", Date.valueOf("1980-12-18")) < 0);
+        assertEquals(0, comparator(DataType.TIMESTAMP, false).compare(
+            "2010-01-02 03:04:05.678", Timestamp.valueOf("2010-01-02 03:04:05.678")));
+    }
+
+    @Test
+    public void compare_string() {
+        assertTrue(comparator(DataType.VARCHAR, false).compare("SMITH", "SMITH  ") != 0);
+        assertEquals(0, comparator(DataType.VARCHAR, true).compare("SMITH", "SMITH  "));
+        assertEquals(0, comparator(DataType.CHAR, true).compare("  SMITH ", "  SMITH"));
+        assertTrue(comparator(DataType.VARCHAR, true).compare("A", "B") < 0);
+    }
+
+    @Test
+    public void compare_null() {
+        ValueComparator comparator = comparator(DataType.INTEGER, false);
+        assertEquals(0, comparator.compare(null, null));
+        assertTrue(comparator.compare(null, 1) < 0);
+        assertTrue(comparator.compare(1, null) > 0);
+    }
+
+    @Test
+    public void compare_other() {
+        assertEquals(0, comparator(DataType.BOOLEAN, false).compare("true", Boolean.TRUE));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void compare_type_cast_failure() {
+        comparator(DataType.DATE, false).compare("not a date", Date.valueOf("1980-12-17"));
+    }
+
+    private static ValueComparator comparator(DataType dataType, boolean rtrim) {
+        return ValueComparator.forColumn(new Column("c", dataType), rtrim);
+    }
+}